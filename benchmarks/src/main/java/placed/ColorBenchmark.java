@@ -0,0 +1,52 @@
+package placed;
+
+import static java.util.concurrent.TimeUnit.*;
+
+import java.util.*;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import placed.Placed.Color;
+
+/**
+ * RGB to palette lookups, against the stream over {@code Color.values()} that {@code Color.getColor} used to be.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(NANOSECONDS)
+@Warmup(iterations = 3, time = 1, timeUnit = SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = SECONDS)
+@Fork(1)
+public class ColorBenchmark {
+
+	private static final int LOOKUPS = 1024;
+
+	// A tenth of the lookups are for colors outside of the palette
+	private final int[] rgbs = new int[LOOKUPS];
+
+	@Setup
+	public void setup() {
+		var random = new Random(0);
+		var colors = Color.values();
+		for (int i = 0; i < this.rgbs.length; i++) {
+			this.rgbs[i] = random.nextInt(10) == 0 ? 0xff000000 | random.nextInt()
+				: colors[random.nextInt(colors.length)].getRgb();
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LOOKUPS)
+	public void lookup(Blackhole blackhole) {
+		for (int rgb : this.rgbs)
+			blackhole.consume(Color.getColor(rgb));
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LOOKUPS)
+	public void streamLookup(Blackhole blackhole) {
+		for (int rgb : this.rgbs)
+			blackhole.consume(Arrays.stream(Color.values()).filter(c -> c.getRgb() == rgb).findAny().orElse(null));
+	}
+
+}
@@ -0,0 +1,67 @@
+package placed;
+
+import static java.util.concurrent.TimeUnit.*;
+
+import java.io.*;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Applying diff frames of different sizes: merging an already decoded delta, decoding a PNG straight into the canvas,
+ * and the old way of decoding it with ImageIO first.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(MICROSECONDS)
+@Warmup(iterations = 3, time = 1, timeUnit = SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = SECONDS)
+@Fork(1)
+public class DiffBenchmark {
+
+	@Param({ "100", "10000", "250000" })
+	public int pixels;
+
+	@Param({ "0.1" })
+	public double density;
+
+	private Canvas canvas;
+	private MismatchIndex index;
+	// A diff and its inverse, so that every invocation changes all of its pixels instead of hitting the no-change path
+	private Canvas[] deltas;
+	private byte[][] pngs;
+	private int next;
+
+	@Setup
+	public void setup() throws IOException {
+		var random = new Random(0);
+		var target = Synthetic.target(random, this.density);
+		this.canvas = Synthetic.canvas(random);
+		this.index = new MismatchIndex();
+		this.index.rebuild(this.canvas, target);
+		var diff = Synthetic.diff(random, this.canvas, this.pixels);
+		this.deltas = new Canvas[] { diff, Synthetic.inverse(this.canvas, diff) };
+		this.pngs = new byte[][] { Synthetic.png(this.deltas[0]), Synthetic.png(this.deltas[1]) };
+	}
+
+	@Benchmark
+	public int applyDelta() {
+		return this.canvas.apply(this.deltas[this.next++ & 1], this.index::update);
+	}
+
+	@Benchmark
+	public int decodeInto() throws IOException {
+		var png = this.pngs[this.next++ & 1];
+		return PngDecoder.decodeInto(new ByteArrayInputStream(png), this.canvas, this.index::update);
+	}
+
+	@Benchmark
+	public int decodeImageIo() throws IOException {
+		var png = this.pngs[this.next++ & 1];
+		var delta = Synthetic.fromImage(ImageIO.read(new ByteArrayInputStream(png)));
+		return this.canvas.apply(delta, this.index::update);
+	}
+
+}
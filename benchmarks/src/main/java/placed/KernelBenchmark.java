@@ -0,0 +1,57 @@
+package placed;
+
+import static java.util.concurrent.TimeUnit.*;
+
+import java.util.*;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * The {@link PixelKernels} against the sparse loops in {@link Target}, at a few target densities. The vector kernels
+ * need the incubator module, which the forks are started with.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(MICROSECONDS)
+@Warmup(iterations = 3, time = 1, timeUnit = SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = SECONDS)
+@Fork(value = 1, jvmArgsAppend = { "--add-modules", "jdk.incubator.vector" })
+public class KernelBenchmark {
+
+	@Param({ "sparse", "scalar", "vector" })
+	public String kernels;
+
+	@Param({ "0.01", "0.1", "0.5", "1" })
+	public double density;
+
+	private Target target;
+	private Canvas canvas;
+	private byte[] targetPixels;
+	private long[] words;
+	private PixelKernels implementation;
+
+	@Setup
+	public void setup() throws ReflectiveOperationException {
+		var random = new Random(0);
+		this.target = Synthetic.target(random, this.density);
+		this.canvas = Synthetic.painted(random, Synthetic.canvas(random), this.target, 0.25);
+		this.targetPixels = new byte[this.canvas.size()];
+		for (int i = 0; i < this.targetPixels.length; i++)
+			this.targetPixels[i] = this.target.getAt(i);
+		this.words = new long[(this.canvas.size() + 63) >>> 6];
+		this.implementation = switch (this.kernels) {
+			case "scalar" -> new ScalarKernels();
+			case "vector" -> (PixelKernels) Class.forName("placed.VectorKernels").getDeclaredConstructor().newInstance();
+			default -> null;
+		};
+	}
+
+	@Benchmark
+	public int findMismatches() {
+		Arrays.fill(this.words, 0);
+		if (this.implementation == null)
+			return this.target.findMismatches(this.canvas, this.words);
+		return this.implementation.findMismatches(this.targetPixels, this.canvas.getPixels(), this.words);
+	}
+
+}
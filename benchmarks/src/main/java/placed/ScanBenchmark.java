@@ -0,0 +1,61 @@
+package placed;
+
+import static java.util.concurrent.TimeUnit.*;
+
+import java.util.Random;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Finding work on a canvas: rebuilding the mismatch index after a full frame, taking a snapshot of it for the readers,
+ * and sampling the snapshot the way {@code findCoordinates} does on every tick.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(MICROSECONDS)
+@Warmup(iterations = 3, time = 1, timeUnit = SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = SECONDS)
+@Fork(1)
+public class ScanBenchmark {
+
+	@Param({ "0.01", "0.1", "0.5" })
+	public double density;
+
+	@Param({ "0.01", "0.25" })
+	public double contested;
+
+	private Target target;
+	private Canvas canvas;
+	private MismatchIndex index;
+	private long[] blocks;
+	private CanvasSnapshot snapshot;
+	private Random random;
+
+	@Setup
+	public void setup() {
+		this.random = new Random(0);
+		this.target = Synthetic.target(this.random, this.density);
+		this.canvas = Synthetic.painted(this.random, Synthetic.canvas(this.random), this.target, this.contested);
+		this.index = new MismatchIndex();
+		this.index.rebuild(this.canvas, this.target);
+		this.blocks = new long[CanvasSnapshot.blockCount(this.canvas.getWidth(), this.canvas.getHeight())];
+		this.snapshot = CanvasSnapshot.take(null, this.canvas, this.index, 1, 1, this.blocks);
+	}
+
+	@Benchmark
+	public CanvasSnapshot takeSnapshot() {
+		// Every block is copied, like after a full frame
+		return CanvasSnapshot.take(null, this.canvas, this.index, 1, 1, this.blocks);
+	}
+
+	@Benchmark
+	public int[] sampleMismatches() {
+		return this.snapshot.sample(100, this.random);
+	}
+
+	@Benchmark
+	public void rebuildIndex() {
+		new MismatchIndex().rebuild(this.canvas, this.target);
+	}
+
+}
@@ -0,0 +1,132 @@
+package placed;
+
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.util.Random;
+
+import javax.annotation.Nonnull;
+import javax.imageio.ImageIO;
+
+import placed.Placed.Color;
+
+/**
+ * Generates synthetic canvases, targets and diff frames for the benchmarks.
+ */
+final class Synthetic {
+
+	static final int DIMENSIONS = 1000;
+
+	private static final Color[] COLORS = Color.values();
+
+	private Synthetic() {}
+
+	/**
+	 * @return a canvas where every pixel has a random color, like a full frame
+	 */
+	@Nonnull
+	static Canvas canvas(@Nonnull Random random) {
+		var canvas = new Canvas(DIMENSIONS, DIMENSIONS);
+		for (int i = 0; i < canvas.size(); i++)
+			canvas.setAt(i, randomIndex(random));
+		return canvas;
+	}
+
+	/**
+	 * @return a target that paints roughly {@code density} of the canvas
+	 */
+	@Nonnull
+	static Target target(@Nonnull Random random, double density) {
+		var canvas = new Canvas(DIMENSIONS, DIMENSIONS);
+		for (int i = 0; i < canvas.size(); i++) {
+			if (random.nextDouble() < density)
+				canvas.setAt(i, randomIndex(random));
+		}
+		return Target.compile(canvas);
+	}
+
+	/**
+	 * @return a copy of {@code base} where all of the target is painted, except for roughly {@code contested} of it
+	 */
+	@Nonnull
+	static Canvas painted(@Nonnull Random random, @Nonnull Canvas base, @Nonnull Target target, double contested) {
+		var canvas = new Canvas(base.getWidth(), base.getHeight());
+		for (int i = 0; i < canvas.size(); i++) {
+			byte index = target.getAt(i);
+			canvas.setAt(i, index != Canvas.NONE && random.nextDouble() >= contested ? index : base.getAt(i));
+		}
+		return canvas;
+	}
+
+	/**
+	 * @return a diff canvas that changes {@code pixels} distinct random pixels of {@code base}, each to another color
+	 */
+	@Nonnull
+	static Canvas diff(@Nonnull Random random, @Nonnull Canvas base, int pixels) {
+		var canvas = new Canvas(base.getWidth(), base.getHeight());
+		for (int changed = 0; changed < pixels;) {
+			int position = random.nextInt(canvas.size());
+			byte index = randomIndex(random);
+			if (canvas.getAt(position) == Canvas.NONE && index != base.getAt(position)) {
+				canvas.setAt(position, index);
+				changed++;
+			}
+		}
+		return canvas;
+	}
+
+	/**
+	 * @return a diff canvas that undoes {@code diff}, putting back the pixels it changed on {@code base}
+	 */
+	@Nonnull
+	static Canvas inverse(@Nonnull Canvas base, @Nonnull Canvas diff) {
+		var canvas = new Canvas(base.getWidth(), base.getHeight());
+		for (int i = 0; i < canvas.size(); i++) {
+			if (diff.getAt(i) != Canvas.NONE)
+				canvas.setAt(i, base.getAt(i));
+		}
+		return canvas;
+	}
+
+	/**
+	 * @return {@code diff} encoded as a transparent RGBA PNG, the way the server sends diff frames
+	 */
+	@Nonnull
+	static byte[] png(@Nonnull Canvas diff) throws IOException {
+		var image = new BufferedImage(diff.getWidth(), diff.getHeight(), BufferedImage.TYPE_INT_ARGB);
+		for (int y = 0; y < diff.getHeight(); y++) {
+			for (int x = 0; x < diff.getWidth(); x++) {
+				var color = Color.byIndex(diff.getAt(y * diff.getWidth() + x));
+				if (color != null)
+					image.setRGB(x, y, color.getRgb());
+			}
+		}
+		var out = new ByteArrayOutputStream();
+		ImageIO.write(image, "png", out);
+		return out.toByteArray();
+	}
+
+	/**
+	 * Converts an image to palette indices the way frames were converted before {@link PngDecoder}, pixel by pixel
+	 * through {@link BufferedImage#getRGB(int, int, int, int, int[], int, int)}.
+	 */
+	@Nonnull
+	static Canvas fromImage(@Nonnull BufferedImage image) {
+		int width = image.getWidth();
+		var canvas = new Canvas(width, image.getHeight());
+		var row = new int[width];
+		for (int y = 0; y < image.getHeight(); y++) {
+			image.getRGB(0, y, width, 1, row, 0, width);
+			for (int x = 0; x < width; x++) {
+				var color = (row[x] & 0xff000000) == 0 ? null : Color.getColor(row[x]);
+				if (color != null)
+					canvas.setAt(y * width + x, (byte) color.getIndex());
+			}
+		}
+		return canvas;
+	}
+
+	private static byte randomIndex(@Nonnull Random random) {
+		return (byte) COLORS[random.nextInt(COLORS.length)].getIndex();
+	}
+
+}
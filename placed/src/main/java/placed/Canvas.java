@@ -0,0 +1,171 @@
+package placed;
+
+import java.awt.image.BufferedImage;
+import java.lang.invoke.*;
+import java.nio.*;
+import java.util.Arrays;
+
+import javax.annotation.*;
+
+import placed.Placed.Color;
+
+/**
+ * A canvas stored as a flat row-major array of palette indices, one byte per pixel. Pixels that are transparent or
+ * aren't in the {@link Color} palette hold {@link #NONE}. All of the hot loops go through the bulk methods here
+ * instead of {@link BufferedImage#getRGB(int, int)}, which converts the color model on every call.
+ */
+final class Canvas {
+
+	/**
+	 * The reserved index for transparent and unknown pixels.
+	 */
+	static final byte NONE = -1;
+
+	private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+	private final int width;
+	private final int height;
+	@Nonnull
+	private final byte[] pixels;
+
+	Canvas(int width, int height) {
+		this(width, height, new byte[width * height]);
+		Arrays.fill(this.pixels, NONE);
+	}
+
+	private Canvas(int width, int height, @Nonnull byte[] pixels) {
+		this.width = width;
+		this.height = height;
+		this.pixels = pixels;
+	}
+
+	/**
+	 * @return the canvas as an ARGB image, with {@link #NONE} pixels left transparent
+	 */
+	@Nonnull
+	BufferedImage toImage() {
+		var image = new BufferedImage(this.width, this.height, BufferedImage.TYPE_INT_ARGB);
+		var row = new int[this.width];
+		for (int y = 0; y < this.height; y++) {
+			for (int x = 0; x < this.width; x++) {
+				var color = Color.byIndex(this.pixels[y * this.width + x]);
+				row[x] = color == null ? 0 : color.getRgb();
+			}
+			image.setRGB(0, y, this.width, 1, row, 0, this.width);
+		}
+		return image;
+	}
+
+	int getWidth() {
+		return this.width;
+	}
+
+	int getHeight() {
+		return this.height;
+	}
+
+	void set(int x, int y, byte index) {
+		this.pixels[y * this.width + x] = index;
+	}
+
+	/**
+	 * @return the pixel at a row-major {@code position}, that is {@code y * width + x}
+	 */
+	byte getAt(int position) {
+		return this.pixels[position];
+	}
+
+	void setAt(int position, byte index) {
+		this.pixels[position] = index;
+	}
+
+	/**
+	 * @return the backing array, for the {@link PixelKernels}; it must not be modified
+	 */
+	@Nonnull
+	byte[] getPixels() {
+		return this.pixels;
+	}
+
+	/**
+	 * Copies the pixels from {@code buffer}, starting at its current position.
+	 */
+	void readFrom(@Nonnull ByteBuffer buffer) {
+		buffer.get(this.pixels);
+	}
+
+	/**
+	 * Resets every pixel to {@link #NONE}.
+	 */
+	void clear() {
+		Arrays.fill(this.pixels, NONE);
+	}
+
+	int size() {
+		return this.pixels.length;
+	}
+
+	/**
+	 * Copies every pixel of {@code delta} that isn't {@link #NONE} onto this canvas, calling {@code listener} for each
+	 * pixel whose value actually changed.
+	 *
+	 * @return the number of pixels that were copied
+	 */
+	int apply(@Nonnull Canvas delta, @Nullable ChangeListener listener) {
+		checkSize(delta);
+		var src = delta.pixels;
+		var dst = this.pixels;
+		int applied = 0;
+		int i = 0;
+		for (; i + Long.BYTES <= src.length; i += Long.BYTES) {
+			// Deltas are mostly NONE, so whole words of it are skipped at once
+			if ((long) LONGS.get(src, i) != -1L)
+				applied += applyRange(src, dst, i, i + Long.BYTES, listener);
+		}
+		return applied + applyRange(src, dst, i, src.length, listener);
+	}
+
+	private static int applyRange(@Nonnull byte[] src, @Nonnull byte[] dst, int from, int to,
+								  @Nullable ChangeListener listener) {
+		int applied = 0;
+		for (int i = from; i < to; i++) {
+			byte index = src[i];
+			if (index != NONE) {
+				if (listener != null && dst[i] != index) {
+					dst[i] = index;
+					listener.changed(i, index);
+				} else {
+					dst[i] = index;
+				}
+				applied++;
+			}
+		}
+		return applied;
+	}
+
+	/**
+	 * @return the number of pixels on this canvas that aren't {@link #NONE}
+	 */
+	int countPainted() {
+		int painted = 0;
+		for (byte index : this.pixels) {
+			if (index != NONE)
+				painted++;
+		}
+		return painted;
+	}
+
+	private void checkSize(@Nonnull Canvas other) {
+		if (other.width != this.width || other.height != this.height)
+			throw new IllegalArgumentException(String.format("Canvas size mismatch: %dx%d and %dx%d", this.width,
+															 this.height, other.width, other.height));
+	}
+
+	@FunctionalInterface
+	interface ChangeListener {
+
+		void changed(int position, byte index);
+
+	}
+
+}
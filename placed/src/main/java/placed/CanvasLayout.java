@@ -0,0 +1,114 @@
+package placed;
+
+import java.util.*;
+
+import javax.annotation.*;
+
+/**
+ * Where each canvas sits in the global coordinate space, as announced by the server's
+ * {@code ConfigurationMessageData}. Every canvas is a tile of the same size, offset by its {@code dx} and {@code dy}.
+ * Layouts are immutable, a new configuration replaces the old layout with {@link #merge(CanvasLayout)}.
+ */
+final class CanvasLayout {
+
+	/**
+	 * The layout used until the server sends its configuration: three 1000x1000 tiles, two on top and one below.
+	 */
+	static final CanvasLayout DEFAULT =
+		new CanvasLayout(1000, 1000,
+						 List.of(new Placement(0, 0, 0), new Placement(1, 1000, 0), new Placement(2, 0, 1000)));
+
+	record Placement(int index, int dx, int dy) {}
+
+	private final int tileWidth;
+	private final int tileHeight;
+	@Nonnull
+	private final SortedMap<Integer, Placement> tiles;
+
+	CanvasLayout(int tileWidth, int tileHeight, @Nonnull Collection<Placement> tiles) {
+		if (tileWidth <= 0 || tileHeight <= 0)
+			throw new IllegalArgumentException("Tiles must have a positive size");
+		this.tileWidth = tileWidth;
+		this.tileHeight = tileHeight;
+		var map = new TreeMap<Integer, Placement>();
+		for (var tile : tiles)
+			map.put(tile.index(), tile);
+		this.tiles = Collections.unmodifiableSortedMap(map);
+	}
+
+	/**
+	 * Combines this layout with a newer one. Tiles only ever get added: the newer layout's tiles win, but the ones it
+	 * doesn't mention are kept, since their canvases may still be in use.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the newer layout has tiles of another size, which the canvases, targets and snapshots of the
+	 *             kept tiles wouldn't match
+	 */
+	@Nonnull
+	CanvasLayout merge(@Nonnull CanvasLayout newer) {
+		if (!hasTileSize(newer.tileWidth, newer.tileHeight))
+			throw new IllegalArgumentException(String.format("Can't merge tiles of %dx%d into tiles of %dx%d",
+															 newer.tileWidth, newer.tileHeight, this.tileWidth,
+															 this.tileHeight));
+		var merged = new ArrayList<>(this.tiles.values());
+		merged.addAll(newer.tiles.values());
+		return new CanvasLayout(this.tileWidth, this.tileHeight, merged);
+	}
+
+	boolean hasTileSize(int width, int height) {
+		return this.tileWidth == width && this.tileHeight == height;
+	}
+
+	int getTileWidth() {
+		return this.tileWidth;
+	}
+
+	int getTileHeight() {
+		return this.tileHeight;
+	}
+
+	/**
+	 * @return the tiles, ordered by their index
+	 */
+	@Nonnull
+	Collection<Placement> getPlacements() {
+		return this.tiles.values();
+	}
+
+	@Nullable
+	Placement getPlacement(int index) {
+		return this.tiles.get(index);
+	}
+
+	/**
+	 * @return the width of the smallest area, starting from the origin, that covers all of the tiles
+	 */
+	int getWidth() {
+		return this.tiles.values().stream().mapToInt(t -> t.dx() + this.tileWidth).max().orElse(0);
+	}
+
+	/**
+	 * @return the height of the smallest area, starting from the origin, that covers all of the tiles
+	 */
+	int getHeight() {
+		return this.tiles.values().stream().mapToInt(t -> t.dy() + this.tileHeight).max().orElse(0);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		return obj instanceof CanvasLayout other && this.tileWidth == other.tileWidth
+			&& this.tileHeight == other.tileHeight && this.tiles.equals(other.tiles);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(this.tileWidth, this.tileHeight, this.tiles);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d tiles of %dx%d in %dx%d", this.tiles.size(), this.tileWidth, this.tileHeight,
+							 getWidth(), getHeight());
+	}
+
+}
@@ -0,0 +1,211 @@
+package placed;
+
+import java.util.*;
+
+import javax.annotation.*;
+
+/**
+ * An immutable copy of a canvas and its mismatch index, as of the frame with {@link #getTimestamp()}. Snapshots are
+ * published by the {@link FramePipeline} worker after every batch of frames it applies, so readers never see a
+ * half-applied frame and never have to lock the canvas the worker is writing to.
+ * <p>
+ * The canvas is split into square blocks of {@link #BLOCK_SIZE} pixels, and the snapshot knows the version each block
+ * last changed in. Anything derived from a block, like an encoded image of it, stays valid until then. A snapshot only
+ * copies the blocks that changed since the previous one, and shares the rest with it.
+ */
+final class CanvasSnapshot {
+
+	static final int BLOCK_SIZE = 256;
+
+	private final int width;
+	private final int height;
+	@Nonnull
+	private final Target target;
+	// The pixels and the mismatches of every block, row by row within the block
+	@Nonnull
+	private final byte[][] pixels;
+	@Nonnull
+	private final BitSet[] mismatches;
+	private final int mismatchCount;
+	private final long timestamp;
+	private final long version;
+	@Nonnull
+	private final long[] blockVersions;
+
+	private CanvasSnapshot(int width, int height, @Nonnull Target target, @Nonnull byte[][] pixels,
+						   @Nonnull BitSet[] mismatches, int mismatchCount, long timestamp, long version,
+						   @Nonnull long[] blockVersions) {
+		this.width = width;
+		this.height = height;
+		this.target = target;
+		this.pixels = pixels;
+		this.mismatches = mismatches;
+		this.mismatchCount = mismatchCount;
+		this.timestamp = timestamp;
+		this.version = version;
+		this.blockVersions = blockVersions;
+	}
+
+	/**
+	 * Takes a snapshot of a canvas and its mismatch index, which must have a target. The blocks that didn't change
+	 * after {@code previous} are shared with it, and so are their mismatches unless the target was swapped since.
+	 *
+	 * @param previous
+	 *            the last snapshot of the same canvas, or {@code null} to copy every block
+	 * @param blockVersions
+	 *            the version each block last changed in, row by row, as laid out by {@link #blockOf(int, int)}
+	 */
+	@Nonnull
+	static CanvasSnapshot take(@Nullable CanvasSnapshot previous, @Nonnull Canvas canvas, @Nonnull MismatchIndex index,
+							   long timestamp, long version, @Nonnull long[] blockVersions) {
+		var target = Objects.requireNonNull(index.getTarget(), "The mismatch index has no target");
+		int width = canvas.getWidth();
+		int height = canvas.getHeight();
+		int across = blocksAcross(width);
+		var source = canvas.getPixels();
+		boolean sameSize = previous != null && previous.width == width && previous.height == height;
+		var pixels = new byte[blockCount(width, height)][];
+		var mismatches = new BitSet[pixels.length];
+		for (int block = 0; block < pixels.length; block++) {
+			boolean changed = !sameSize || blockVersions[block] > previous.version;
+			int left = block % across * BLOCK_SIZE;
+			int top = block / across * BLOCK_SIZE;
+			int blockWidth = Math.min(BLOCK_SIZE, width - left);
+			int blockHeight = Math.min(BLOCK_SIZE, height - top);
+
+			if (changed) {
+				var copy = pixels[block] = new byte[blockWidth * blockHeight];
+				for (int row = 0; row < blockHeight; row++)
+					System.arraycopy(source, (top + row) * width + left, copy, row * blockWidth, blockWidth);
+			} else {
+				pixels[block] = previous.pixels[block];
+			}
+
+			if (changed || previous.target != target) {
+				var bits = mismatches[block] = new BitSet();
+				for (int row = 0; row < blockHeight; row++) {
+					int start = (top + row) * width + left;
+					int end = start + blockWidth;
+					for (int i = index.nextMismatch(start); i >= 0 && i < end; i = index.nextMismatch(i + 1))
+						bits.set(row * blockWidth + i - start);
+				}
+			} else {
+				mismatches[block] = previous.mismatches[block];
+			}
+		}
+		return new CanvasSnapshot(width, height, target, pixels, mismatches, index.count(), timestamp, version,
+								  blockVersions.clone());
+	}
+
+	/**
+	 * @return the number of blocks a canvas of this size is split into
+	 */
+	static int blockCount(int width, int height) {
+		return blocksAcross(width) * ((height + BLOCK_SIZE - 1) / BLOCK_SIZE);
+	}
+
+	/**
+	 * @return the block the row-major {@code position} on a canvas {@code width} pixels wide falls into
+	 */
+	static int blockOf(int position, int width) {
+		return position / width / BLOCK_SIZE * blocksAcross(width) + position % width / BLOCK_SIZE;
+	}
+
+	private static int blocksAcross(int width) {
+		return (width + BLOCK_SIZE - 1) / BLOCK_SIZE;
+	}
+
+	int getWidth() {
+		return this.width;
+	}
+
+	int getHeight() {
+		return this.height;
+	}
+
+	/**
+	 * @return the palette index of the pixel at the row-major {@code position}
+	 */
+	byte getAt(int position) {
+		int x = position % this.width;
+		int y = position / this.width;
+		int left = x / BLOCK_SIZE * BLOCK_SIZE;
+		int blockWidth = Math.min(BLOCK_SIZE, this.width - left);
+		return this.pixels[blockOf(position, this.width)][y % BLOCK_SIZE * blockWidth + x - left];
+	}
+
+	/**
+	 * @return the pixels of the block in column {@code x} and row {@code y}, row by row, which must not be modified.
+	 *         The blocks on the right and bottom edges are cut off by the edge of the canvas.
+	 */
+	@Nonnull
+	byte[] getBlock(int x, int y) {
+		return this.pixels[y * blocksAcross(this.width) + x];
+	}
+
+	/**
+	 * @return the target that the mismatches were computed against
+	 */
+	@Nonnull
+	Target getTarget() {
+		return this.target;
+	}
+
+	int getMismatchCount() {
+		return this.mismatchCount;
+	}
+
+	/**
+	 * @return the timestamp of the last frame this snapshot reflects
+	 */
+	long getTimestamp() {
+		return this.timestamp;
+	}
+
+	/**
+	 * @return a number that grows with every snapshot published for the same canvas
+	 */
+	long getVersion() {
+		return this.version;
+	}
+
+	/**
+	 * @return the version the block in column {@code x} and row {@code y} last changed in
+	 */
+	long getBlockVersion(int x, int y) {
+		return this.blockVersions[y * blocksAcross(this.width) + x];
+	}
+
+	/**
+	 * Picks up to {@code quantity} mismatching positions uniformly at random. This only walks the set bits, so it's
+	 * proportional to the number of mismatches rather than to the canvas area.
+	 */
+	@Nonnull
+	int[] sample(int quantity, @Nonnull Random random) {
+		var sample = new int[Math.min(quantity, this.mismatchCount)];
+		if (sample.length == 0)
+			return sample;
+
+		int seen = 0;
+		int across = blocksAcross(this.width);
+		for (int block = 0; block < this.mismatches.length; block++) {
+			var bits = this.mismatches[block];
+			int left = block % across * BLOCK_SIZE;
+			int top = block / across * BLOCK_SIZE;
+			int blockWidth = Math.min(BLOCK_SIZE, this.width - left);
+			for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+				int position = (top + i / blockWidth) * this.width + left + i % blockWidth;
+				if (seen < sample.length) {
+					sample[seen] = position;
+				} else {
+					int slot = random.nextInt(seen + 1);
+					if (slot < sample.length)
+						sample[slot] = position;
+				}
+				seen++;
+			}
+		}
+		return sample;
+	}
+
+}
@@ -0,0 +1,316 @@
+package placed;
+
+import java.io.PrintStream;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+import javax.annotation.*;
+
+/**
+ * An asynchronous log for the bot's events. Callers only check the level and put the raw format string and arguments
+ * into a bounded lock-free ring buffer, a single background thread does all of the formatting and writing. When the
+ * buffer is full, events are dropped and counted instead of blocking the caller. The writer sleeps while there's
+ * nothing to write, and the first event queued after it went to sleep wakes it up.
+ * <p>
+ * Every event belongs to a {@link Category} with its own minimum level, set with {@code -Dplaced.log.<category>}
+ * (eg. {@code -Dplaced.log.updater=warn}). The writer also rate limits each format string to
+ * {@link #RATE_LIMIT} events per second, and says how many it suppressed once the message is let through again.
+ */
+final class EventLog {
+
+	enum Level {
+		DEBUG,
+		INFO,
+		WARN,
+		ERRO
+	}
+
+	enum Category {
+
+		MAIN("  MAIN  "),
+		ACCOUNTS("ACCOUNTS"),
+		UPDATER("UPDATER "),
+		WEBSOCK("WEBSOCK "),
+		STATUS(" STATUS "),
+		METRICS("METRICS "),
+		KERNELS("KERNELS "),
+		RECORDER("RECORDER"),
+		REPLAY(" REPLAY ");
+
+		@Nonnull
+		private final String tag;
+		@Nonnull
+		private final Level level;
+
+		private Category(@Nonnull String tag) {
+			this.tag = tag;
+			this.level = parseLevel("placed.log." + name().toLowerCase());
+		}
+
+		/**
+		 * Reads a level from a system property. This runs while the enum is initialized, so a typo can't be allowed to
+		 * throw: unknown values fall back to INFO with a warning on stderr.
+		 */
+		@Nonnull
+		private static Level parseLevel(@Nonnull String property) {
+			var value = System.getProperty(property);
+			if (value == null)
+				return Level.INFO;
+			return switch (value.trim().toUpperCase()) {
+				case "DEBUG" -> Level.DEBUG;
+				case "INFO" -> Level.INFO;
+				case "WARN", "WARNING" -> Level.WARN;
+				case "ERROR", "ERRO", "ERR" -> Level.ERRO;
+				default -> {
+					System.err.printf("[  MAIN  ] WARN Unknown log level %s=%s, using INFO%n", property, value);
+					yield Level.INFO;
+				}
+			};
+		}
+
+	}
+
+	static final int RATE_LIMIT = 20;
+	private static final long RATE_WINDOW = 1_000_000_000L;
+
+	@Nonnull
+	private final PrintStream out;
+	// A bounded multi-producer queue: every slot carries a sequence number that tells producers and the writer whose
+	// turn it is, so neither side ever needs a lock
+	@Nonnull
+	private final AtomicReferenceArray<Event> slots;
+	@Nonnull
+	private final AtomicLongArray sequences;
+	private final int mask;
+	private final AtomicLong tail = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+	@Nonnull
+	private final Thread writer;
+	// Whether the writer might be parked, so producers only pay for an unpark when it's needed
+	private volatile boolean sleeping;
+	// Only touched by the writer
+	private long head;
+	private final Map<String, Window> windows = new HashMap<>();
+
+	/**
+	 * @param capacity
+	 *            the size of the ring buffer, rounded up to a power of two
+	 */
+	EventLog(@Nonnull PrintStream out, int capacity) {
+		int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+		this.out = out;
+		this.slots = new AtomicReferenceArray<>(size);
+		this.sequences = new AtomicLongArray(size);
+		for (int i = 0; i < size; i++)
+			this.sequences.set(i, i);
+		this.mask = size - 1;
+		this.writer = new Thread(this::drain, "event-log");
+		this.writer.setDaemon(true);
+		this.writer.start();
+		Runtime.getRuntime().addShutdownHook(new Thread(this::flush, "event-log-flush"));
+	}
+
+	/**
+	 * Wraps a value that is expensive to format, so it's only formatted on the writer thread.
+	 */
+	@Nonnull
+	static Object lazy(@Nonnull Supplier<String> value) {
+		return new Object() {
+
+			@Override
+			public String toString() {
+				return value.get();
+			}
+
+		};
+	}
+
+	void debug(@Nonnull Category category, @Nonnull String format, @Nonnull Object... args) {
+		log(category, Level.DEBUG, format, args);
+	}
+
+	void info(@Nonnull Category category, @Nonnull String format, @Nonnull Object... args) {
+		log(category, Level.INFO, format, args);
+	}
+
+	void warn(@Nonnull Category category, @Nonnull String format, @Nonnull Object... args) {
+		log(category, Level.WARN, format, args);
+	}
+
+	void error(@Nonnull Category category, @Nonnull String format, @Nonnull Object... args) {
+		log(category, Level.ERRO, format, args);
+	}
+
+	/**
+	 * Queues an event, if its category logs the level. {@code format} is a {@link String#format(String, Object...)}
+	 * pattern. If the last argument is a {@link Throwable}, its stack trace is printed after the message.
+	 */
+	void log(@Nonnull Category category, @Nonnull Level level, @Nonnull String format, @Nonnull Object... args) {
+		if (level.compareTo(category.level) < 0)
+			return;
+
+		var event = new Event(category, level, format, args, System.nanoTime());
+		while (true) {
+			long position = this.tail.get();
+			int slot = (int) position & this.mask;
+			long sequence = this.sequences.get(slot);
+			if (sequence == position) {
+				if (this.tail.compareAndSet(position, position + 1)) {
+					this.slots.set(slot, event);
+					this.sequences.set(slot, position + 1);
+					if (this.sleeping)
+						LockSupport.unpark(this.writer);
+					return;
+				}
+			} else if (sequence < position) {
+				// The writer hasn't freed this slot yet, so the buffer is full
+				this.dropped.incrementAndGet();
+				return;
+			}
+			// Another producer claimed the position first, try the next one
+		}
+	}
+
+	/**
+	 * Writes out everything that's queued. Called on shutdown, so that the last events before an exit aren't lost.
+	 */
+	synchronized void flush() {
+		while (poll())
+			;
+		reportSuppressed(System.nanoTime() + RATE_WINDOW);
+		this.out.flush();
+	}
+
+	private void drain() {
+		while (true) {
+			long next;
+			long wait;
+			synchronized (this) {
+				boolean any = false;
+				while (poll())
+					any = true;
+				long now = System.nanoTime();
+				// A burst that stopped would otherwise only be reported when its message shows up again
+				any |= reportSuppressed(now);
+				if (any)
+					this.out.flush();
+				next = this.head;
+				wait = untilNextReport(now);
+			}
+
+			// Producers check the flag after publishing, and we check for their events after setting it, so one of
+			// us always sees the other
+			this.sleeping = true;
+			if (this.sequences.get((int) next & this.mask) != next + 1) {
+				if (wait == Long.MAX_VALUE)
+					LockSupport.park(this);
+				else
+					LockSupport.parkNanos(this, wait);
+			}
+			this.sleeping = false;
+		}
+	}
+
+	/**
+	 * Writes the next event, if there is one. Must hold the monitor.
+	 */
+	private boolean poll() {
+		int slot = (int) this.head & this.mask;
+		if (this.sequences.get(slot) != this.head + 1)
+			return false;
+		var event = this.slots.get(slot);
+		this.slots.set(slot, null);
+		this.sequences.set(slot, this.head + this.mask + 1);
+		this.head++;
+
+		long lost = this.dropped.getAndSet(0);
+		if (lost > 0)
+			this.out.printf("[  MAIN  ] WARN The event log was full, dropped %d events%n", lost);
+		write(event);
+		return true;
+	}
+
+	/**
+	 * Reports the suppressed messages of every rate limit window that has ended by {@code now}, and forgets those
+	 * windows. Must hold the monitor.
+	 *
+	 * @return whether anything was written
+	 */
+	private boolean reportSuppressed(long now) {
+		boolean any = false;
+		for (var i = this.windows.values().iterator(); i.hasNext();) {
+			var window = i.next();
+			if (now - window.start < RATE_WINDOW)
+				continue;
+			if (window.suppressed > 0) {
+				window.report(this.out);
+				any = true;
+			}
+			i.remove();
+		}
+		return any;
+	}
+
+	/**
+	 * @return the nanoseconds until the first rate limit window with suppressed messages ends, or
+	 *         {@link Long#MAX_VALUE} if there's none. Must hold the monitor.
+	 */
+	private long untilNextReport(long now) {
+		long wait = Long.MAX_VALUE;
+		for (var window : this.windows.values()) {
+			if (window.suppressed > 0)
+				wait = Math.min(wait, window.start + RATE_WINDOW - now);
+		}
+		return wait;
+	}
+
+	private void write(@Nonnull Event event) {
+		var window = this.windows.computeIfAbsent(event.format(), f -> new Window());
+		if (event.time() - window.start >= RATE_WINDOW) {
+			if (window.suppressed > 0)
+				window.report(this.out);
+			window.start = event.time();
+			window.count = 0;
+			window.suppressed = 0;
+		}
+		if (++window.count > RATE_LIMIT) {
+			window.suppressed++;
+			window.category = event.category();
+			window.level = event.level();
+			return;
+		}
+
+		String message;
+		try {
+			message = String.format(event.format(), event.args());
+		} catch (IllegalFormatException e) {
+			message = event.format() + " " + Arrays.toString(event.args());
+		}
+		this.out.printf("[%s] %s %s%n", event.category().tag, event.level(), message);
+		var args = event.args();
+		if (args.length > 0 && args[args.length - 1] instanceof Throwable t)
+			t.printStackTrace(this.out);
+	}
+
+	private static final class Window {
+
+		private long start = Long.MIN_VALUE / 2;
+		private int count;
+		private int suppressed;
+		@Nullable
+		private Category category;
+		@Nullable
+		private Level level;
+
+		private void report(@Nonnull PrintStream out) {
+			out.printf("[%s] %s (suppressed %d similar messages)%n", this.category.tag, this.level, this.suppressed);
+		}
+
+	}
+
+	private static record Event(@Nonnull Category category, @Nonnull Level level, @Nonnull String format,
+								@Nonnull Object[] args, long time) {}
+
+}
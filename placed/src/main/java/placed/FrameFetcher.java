@@ -0,0 +1,235 @@
+package placed;
+
+import static java.lang.String.format;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.io.*;
+import java.net.URI;
+import java.net.http.*;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Fetches canvas frames over the shared {@link HttpClient} without blocking the caller. Response bodies are streamed
+ * into a {@link BodyParser} on the decoder pool. At most
+ * {@code maxConcurrent} frames are in flight at once, the rest wait in a queue. Transport errors and 429 or 5xx
+ * responses are retried with exponential backoff, other failures like a corrupt body fail right away. If a frame can't
+ * be fetched, the returned future completes exceptionally with a {@link FetchException} instead of handing out a blank
+ * canvas. Cancelling the returned future aborts the request
+ * and gives its slot to the next frame.
+ */
+final class FrameFetcher {
+
+	private static final long RETRY_DELAY = 250;
+
+	@Nonnull
+	private final HttpClient client;
+	@Nonnull
+	private final Executor decoders;
+	private final int maxConcurrent;
+	private final int maxAttempts;
+
+	private final AtomicInteger active = new AtomicInteger();
+	private final Queue<Pending> waiting = new ConcurrentLinkedQueue<>();
+	// Calls to drain() that haven't been handled yet. Only the first one loops, the others (including the ones made
+	// while it starts a request) just make it go around again, so drain() never recurses
+	private final AtomicInteger drains = new AtomicInteger();
+
+	FrameFetcher(@Nonnull HttpClient client, @Nonnull Executor decoders, int maxConcurrent, int maxAttempts) {
+		this.client = client;
+		this.decoders = decoders;
+		this.maxConcurrent = maxConcurrent;
+		this.maxAttempts = maxAttempts;
+	}
+
+	@Nonnull
+	<T> CompletableFuture<T> fetch(@Nonnull String url, @Nonnull BodyParser<T> parser) {
+		var result = new CompletableFuture<T>();
+		this.waiting.add(new Pending(result, () -> attempt(url, parser, 1, result)));
+		drain();
+		return result;
+	}
+
+	private void drain() {
+		if (this.drains.getAndIncrement() != 0)
+			return;
+
+		int missed = 1;
+		do {
+			while (true) {
+				int running = this.active.get();
+				if (running >= this.maxConcurrent || this.waiting.isEmpty())
+					break;
+				if (!this.active.compareAndSet(running, running + 1))
+					continue;
+
+				var next = this.waiting.poll();
+				if (next == null || next.result().isDone()) {
+					// Taken by another thread, or cancelled while waiting for a slot
+					this.active.decrementAndGet();
+					continue;
+				}
+				next.start().run();
+			}
+		} while ((missed = this.drains.addAndGet(-missed)) != 0);
+	}
+
+	private void release() {
+		this.active.decrementAndGet();
+		drain();
+	}
+
+	private <T> void attempt(@Nonnull String url, @Nonnull BodyParser<T> parser, int attempt,
+							 @Nonnull CompletableFuture<T> result) {
+		if (result.isDone()) {
+			// Cancelled while backing off
+			release();
+			return;
+		}
+
+		var request = HttpRequest.newBuilder(URI.create(url)).GET().build();
+		var response = this.client.sendAsync(request, BodyHandlers.ofInputStream());
+		result.whenComplete((body, error) -> {
+			if (result.isCancelled())
+				response.cancel(true);
+		});
+		response.thenApplyAsync(r -> parse(r, parser), this.decoders)
+			.whenComplete((body, error) -> {
+				if (error == null) {
+					release();
+					result.complete(body);
+					return;
+				}
+
+				var cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+				if (attempt < this.maxAttempts && isRetryable(cause) && !result.isDone()) {
+					// Keep the slot while backing off so a struggling server doesn't get the whole queue at once
+					var delayed = CompletableFuture.delayedExecutor(RETRY_DELAY << (attempt - 1), MILLISECONDS);
+					delayed.execute(() -> attempt(url, parser, attempt + 1, result));
+				} else {
+					release();
+					result.completeExceptionally(cause instanceof FetchException ? cause
+						: new FetchException(format("Couldn't fetch %s after %d attempt(s)", url, attempt), cause));
+				}
+			});
+	}
+
+	/**
+	 * Parses a response body. An error while reading the body is thrown as is, an error the parser finds in a body
+	 * that arrived fine becomes a {@link FetchException}, so that it isn't retried.
+	 */
+	@Nonnull
+	private static <T> T parse(@Nonnull HttpResponse<InputStream> response, @Nonnull BodyParser<T> parser) {
+		try (var body = new TransportStream(response.body())) {
+			int status = response.statusCode();
+			if (status != 200)
+				throw new FetchException(format("Bad response code %d for %s", status, response.uri()), status);
+			try {
+				return parser.parse(body);
+			} catch (IOException e) {
+				if (body.failed)
+					throw e;
+				throw new FetchException(format("Couldn't parse the response from %s", response.uri()), e);
+			}
+
+		} catch (IOException e) {
+			throw new CompletionException(e);
+		}
+	}
+
+	/**
+	 * Only transport errors and responses that say the server is busy or broken are worth retrying, a body that
+	 * doesn't parse will be just as broken the next time.
+	 */
+	private static boolean isRetryable(@Nonnull Throwable error) {
+		if (error instanceof FetchException e)
+			return e.getStatusCode() == 429 || e.getStatusCode() >= 500;
+		return error instanceof IOException;
+	}
+
+	/**
+	 * Remembers whether reading the body failed, to tell transport errors apart from parse errors.
+	 */
+	private static final class TransportStream extends FilterInputStream {
+
+		private boolean failed;
+
+		TransportStream(@Nonnull InputStream in) {
+			super(in);
+		}
+
+		@Override
+		public int read() throws IOException {
+			try {
+				return super.read();
+			} catch (IOException e) {
+				this.failed = true;
+				throw e;
+			}
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			try {
+				return super.read(b, off, len);
+			} catch (IOException e) {
+				this.failed = true;
+				throw e;
+			}
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			try {
+				return super.skip(n);
+			} catch (IOException e) {
+				this.failed = true;
+				throw e;
+			}
+		}
+
+	}
+
+	/**
+	 * A frame waiting for a slot, and how to start fetching it.
+	 */
+	private static record Pending(@Nonnull CompletableFuture<?> result, @Nonnull Runnable start) {}
+
+	@FunctionalInterface
+	interface BodyParser<T> {
+
+		@Nonnull
+		T parse(@Nonnull InputStream body) throws IOException;
+
+	}
+
+	static final class FetchException extends IOException {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int statusCode;
+
+		FetchException(@Nonnull String message, int statusCode) {
+			super(message);
+			this.statusCode = statusCode;
+		}
+
+		FetchException(@Nonnull String message, @Nonnull Throwable cause) {
+			super(message, cause);
+			this.statusCode = -1;
+		}
+
+		/**
+		 * @return the HTTP status code of the failed response, or -1 if the failure wasn't about the status
+		 */
+		int getStatusCode() {
+			return this.statusCode;
+		}
+
+	}
+
+}
@@ -0,0 +1,446 @@
+package placed;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+
+import javax.annotation.*;
+
+import placed.Canvas.ChangeListener;
+
+/**
+ * Applies the frames of a single canvas in order on its own worker thread (a virtual one where available, see
+ * {@link Threads}). Frames are queued as soon as they're announced, while their bodies are still being fetched. The
+ * queue is bounded: {@link #submitDiff(long, Supplier)} refuses frames once it's full, and the caller is expected to
+ * resync. A lone diff is streamed straight into the canvas, diffs that pile up while the worker is busy are merged
+ * into one delta before they're applied.
+ * <p>
+ * A full frame supersedes everything before it: the bodies of the queued frames and of the batch the worker is on
+ * are cancelled, which aborts their requests, and the worker drops the batch before applying it, without being
+ * interrupted.
+ * <p>
+ * The canvas and its {@link MismatchIndex} belong to the worker. After every batch it publishes a
+ * {@link CanvasSnapshot} copy of both, which any thread can read through {@link #getSnapshot()} without locking.
+ */
+final class FramePipeline {
+
+	// How long it takes for a pixel change to count half as much in the PixelStats, in seconds
+	private static final double STATS_HALF_LIFE = 3600;
+	// How long closing waits for the worker to finish its batch, in seconds
+	private static final long CLOSE_TIMEOUT = 5;
+
+	private final int id;
+	private final int capacity;
+	@Nonnull
+	private final MismatchIndex mismatches = new MismatchIndex();
+	@Nonnull
+	private final Supplier<Target> target;
+	@Nonnull
+	private final BiConsumer<Integer, Throwable> onError;
+	@Nonnull
+	private final ExecutorService worker;
+
+	private final Deque<Frame> queue = new ArrayDeque<>();
+	// The frames the worker is currently on
+	private List<Frame> batch = List.of();
+	private boolean draining;
+	// Bumped by every full frame, so the worker can tell when the frames it's holding have been superseded
+	private long generation;
+	private long submittedTimestamp;
+
+	@Nullable
+	private volatile CanvasSnapshot snapshot;
+	private volatile long appliedTimestamp;
+	// Only touched by the worker
+	@Nullable
+	private Canvas canvas;
+	@Nullable
+	private Canvas merged;
+	@Nullable
+	private SnapshotFile store;
+	// The blocks that changed after this version still have to be written to the store
+	private long storedVersion;
+	@Nullable
+	private FrameRecorder recorder;
+	private final FrameRecorder.Changes changes = new FrameRecorder.Changes();
+	@Nullable
+	private volatile Metrics.Histogram applyLatency;
+	@Nullable
+	private volatile Metrics.Histogram stageLatency;
+	@Nullable
+	private volatile PixelStats stats;
+	private long version;
+	// The version each block of the canvas last changed in, see CanvasSnapshot.blockOf
+	@Nonnull
+	private long[] blockVersions = new long[0];
+
+	FramePipeline(int id, int capacity, @Nonnull Supplier<Target> target,
+				  @Nonnull BiConsumer<Integer, Throwable> onError) {
+		this.id = id;
+		this.capacity = capacity;
+		this.target = target;
+		this.onError = onError;
+		this.worker = Executors.newSingleThreadExecutor(Threads.factory("frames-" + id));
+	}
+
+	/**
+	 * Queues a full frame, cancelling every frame before it that hasn't been applied yet.
+	 */
+	void submitFull(long timestamp, @Nonnull CompletableFuture<Canvas> body) {
+		synchronized (this) {
+			this.generation++;
+			cancelQueued();
+			for (var frame : this.batch)
+				frame.body().cancel(false);
+			enqueue(new Frame(true, timestamp, body));
+		}
+	}
+
+	/**
+	 * Queues a diff frame. The body is only requested if the frame was accepted.
+	 *
+	 * @return {@code false} if the queue is full and the canvas needs a resync
+	 */
+	boolean submitDiff(long timestamp, @Nonnull Supplier<CompletableFuture<byte[]>> body) {
+		synchronized (this) {
+			if (this.queue.size() >= this.capacity)
+				return false;
+			enqueue(new Frame(false, timestamp, body.get()));
+			return true;
+		}
+	}
+
+	/**
+	 * Starts from a canvas restored from {@code store} (if there is one), and persists every snapshot published from
+	 * now on to it. The restored canvas is served until the first full frame replaces it. The store is closed by
+	 * {@link #close()}.
+	 */
+	void restore(@Nullable Canvas restored, long timestamp, @Nonnull SnapshotFile store) {
+		this.worker.execute(() -> {
+			this.store = store;
+			if (restored != null && this.canvas == null) {
+				this.mismatches.rebuild(restored, this.target.get());
+				this.canvas = restored;
+				this.appliedTimestamp = timestamp;
+				touchAll(restored);
+				publish();
+			}
+		});
+	}
+
+	/**
+	 * Stops the worker once it's done with the batch it's on, dropping the frames that are still queued, and then
+	 * forces the snapshot file to disk and closes it. Meant for shutdown, nothing can be submitted afterwards.
+	 */
+	void close() throws IOException {
+		synchronized (this) {
+			this.generation++;
+			cancelQueued();
+			for (var frame : this.batch)
+				frame.body().cancel(false);
+		}
+		this.worker.shutdown();
+		try {
+			if (!this.worker.awaitTermination(CLOSE_TIMEOUT, TimeUnit.SECONDS))
+				throw new IOException("Timed out waiting for the worker of canvas " + this.id);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted waiting for the worker of canvas " + this.id);
+		}
+
+		var file = this.store;
+		this.store = null;
+		if (file != null)
+			file.close();
+	}
+
+	/**
+	 * Records every frame applied from now on, starting with a keyframe of the canvas if there already is one, like
+	 * after it was restored from the store.
+	 */
+	void recordTo(@Nonnull FrameRecorder frameRecorder) {
+		this.worker.execute(() -> {
+			this.recorder = frameRecorder;
+			var current = this.canvas;
+			if (current != null)
+				frameRecorder.keyframe(this.id, this.appliedTimestamp, current);
+		});
+	}
+
+	/**
+	 * Records how long every batch of diffs takes to decode and apply in {@code total}. {@code stages} gets the time
+	 * each step takes, labelled with a {@code stage}:
+	 * <ul>
+	 * <li>{@code fetch}, from queueing a frame until its body arrived (full frames are decoded as they download)
+	 * <li>{@code decode}, decoding a diff of a batch into the merged delta
+	 * <li>{@code apply}, applying a full frame or a merged delta to the canvas
+	 * <li>{@code decode_apply}, streaming a lone diff into the canvas
+	 * </ul>
+	 * The steps after the fetch run one after the other on the worker, these are timers rather than separate stages.
+	 */
+	void measureWith(@Nonnull Metrics.Histogram total, @Nonnull Metrics.Histogram stages) {
+		this.applyLatency = total;
+		this.stageLatency = stages;
+	}
+
+	/**
+	 * Rebuilds the mismatch index against a reloaded target, once the frames that are currently being applied are
+	 * done.
+	 */
+	void retarget() {
+		this.worker.execute(() -> {
+			var current = this.canvas;
+			if (current != null) {
+				this.mismatches.rebuild(current, this.target.get());
+				publish();
+			}
+		});
+	}
+
+	/**
+	 * @return the latest published snapshot, or {@code null} if no full frame has been applied yet
+	 */
+	@Nullable
+	CanvasSnapshot getSnapshot() {
+		return this.snapshot;
+	}
+
+	/**
+	 * @return the churn statistics of the canvas, or {@code null} if no diff frame has been applied yet
+	 */
+	@Nullable
+	PixelStats getStats() {
+		return this.stats;
+	}
+
+	synchronized int getQueueDepth() {
+		return this.queue.size();
+	}
+
+	/**
+	 * @return the timestamp of the last applied frame, or 0 if none were applied yet
+	 */
+	long getAppliedTimestamp() {
+		return this.appliedTimestamp;
+	}
+
+	/**
+	 * @return how far the applied canvas is behind the newest announced frame, in milliseconds of frame time
+	 */
+	synchronized long getLag() {
+		long applied = this.appliedTimestamp;
+		return applied == 0 ? 0 : Math.max(0, this.submittedTimestamp - applied);
+	}
+
+	private void enqueue(@Nonnull Frame frame) {
+		long submitted = System.nanoTime();
+		frame.body().thenRun(() -> measure("fetch", submitted));
+		this.queue.add(frame);
+		this.submittedTimestamp = frame.timestamp();
+		if (!this.draining && !this.worker.isShutdown()) {
+			this.draining = true;
+			this.worker.execute(this::drain);
+		}
+	}
+
+	private void cancelQueued() {
+		for (var frame : this.queue)
+			frame.body().cancel(false);
+		this.queue.clear();
+	}
+
+	private void drain() {
+		while (true) {
+			var frames = new ArrayList<Frame>();
+			long batchGeneration;
+			synchronized (this) {
+				if (this.queue.isEmpty()) {
+					this.batch = List.of();
+					this.draining = false;
+					return;
+				}
+				if (this.queue.peek().full()) {
+					frames.add(this.queue.poll());
+				} else {
+					while (!this.queue.isEmpty() && !this.queue.peek().full())
+						frames.add(this.queue.poll());
+				}
+				this.batch = frames;
+				batchGeneration = this.generation;
+			}
+
+			try {
+				if (frames.get(0).full()) {
+					applyFull(frames.get(0), batchGeneration);
+				} else {
+					long start = System.nanoTime();
+					applyDiffs(frames, batchGeneration);
+					var histogram = this.applyLatency;
+					if (histogram != null)
+						histogram.observeNanos(Metrics.labels("canvas", this.id), System.nanoTime() - start);
+				}
+
+			} catch (CancellationException e) {
+				// Superseded by a full frame
+
+			} catch (Exception e) { // NOSONAR we report everything and keep the worker alive
+				fail(batchGeneration, e);
+			}
+		}
+	}
+
+	private void applyFull(@Nonnull Frame frame, long batchGeneration) {
+		var full = (Canvas) frame.body().join();
+		if (isSuperseded(batchGeneration))
+			return;
+
+		long start = System.nanoTime();
+		this.mismatches.rebuild(full, this.target.get());
+		this.canvas = full;
+		this.appliedTimestamp = frame.timestamp();
+		touchAll(full);
+		publish();
+		measure("apply", start);
+
+		var frameRecorder = this.recorder;
+		if (frameRecorder != null)
+			frameRecorder.keyframe(this.id, frame.timestamp(), full);
+	}
+
+	private void applyDiffs(@Nonnull List<Frame> frames, long batchGeneration) throws IOException {
+		var current = this.canvas;
+		if (current == null)
+			return;
+
+		long timestamp = frames.get(frames.size() - 1).timestamp();
+		if (frames.size() == 1) {
+			var png = (byte[]) frames.get(0).body().join();
+			long start = System.nanoTime();
+			PngDecoder.decodeInto(new ByteArrayInputStream(png), current, listener(current, timestamp));
+			applied(current, timestamp);
+			measure("decode_apply", start);
+			return;
+		}
+
+		var delta = this.merged;
+		if (delta == null || delta.getWidth() != current.getWidth() || delta.getHeight() != current.getHeight())
+			delta = this.merged = new Canvas(current.getWidth(), current.getHeight());
+		try {
+			for (var frame : frames) {
+				var png = (byte[]) frame.body().join();
+				if (isSuperseded(batchGeneration))
+					return;
+				long start = System.nanoTime();
+				PngDecoder.decodeInto(new ByteArrayInputStream(png), delta, null);
+				measure("decode", start);
+			}
+			if (isSuperseded(batchGeneration))
+				return;
+
+			long start = System.nanoTime();
+			current.apply(delta, listener(current, timestamp));
+			applied(current, timestamp);
+			measure("apply", start);
+		} finally {
+			delta.clear();
+		}
+	}
+
+	/**
+	 * @return a listener that keeps the mismatch index, the stats, the block versions and the recording up to date
+	 *         with the pixels a diff changes
+	 */
+	@Nonnull
+	private ChangeListener listener(@Nonnull Canvas current, long timestamp) {
+		var pixelStats = this.stats;
+		if (pixelStats == null || pixelStats.getWidth() != current.getWidth()
+			|| pixelStats.getHeight() != current.getHeight())
+			pixelStats = this.stats =
+				new PixelStats(current.getWidth(), current.getHeight(), timestamp, STATS_HALF_LIFE);
+		var statistics = pixelStats;
+		var currentTarget = this.mismatches.getTarget();
+		var blocks = this.blockVersions;
+		int width = current.getWidth();
+		long next = this.version + 1;
+
+		var frameRecorder = this.recorder;
+		if (frameRecorder != null)
+			this.changes.clear();
+		return (position, index) -> {
+			// Has to look at the mismatch index before it's updated
+			boolean wasCorrect = currentTarget != null && currentTarget.getAt(position) != Canvas.NONE
+				&& !this.mismatches.isMismatch(position);
+			statistics.changed(position, wasCorrect, timestamp);
+			this.mismatches.update(position, index);
+			blocks[CanvasSnapshot.blockOf(position, width)] = next;
+			if (frameRecorder != null)
+				this.changes.changed(position, index);
+		};
+	}
+
+	/**
+	 * Publishes and records the canvas after a diff was applied to it.
+	 */
+	private void applied(@Nonnull Canvas current, long timestamp) throws IOException {
+		this.appliedTimestamp = timestamp;
+		publish();
+
+		var frameRecorder = this.recorder;
+		if (frameRecorder != null)
+			frameRecorder.diff(this.id, this.appliedTimestamp, this.changes, current);
+	}
+
+	private void measure(@Nonnull String stage, long start) {
+		var histogram = this.stageLatency;
+		if (histogram != null)
+			histogram.observeNanos(Metrics.labels("canvas", this.id, "stage", stage), System.nanoTime() - start);
+	}
+
+	private void publish() {
+		var current = this.canvas;
+		if (current == null || this.mismatches.getTarget() == null)
+			return;
+		// Only the blocks that changed since the last snapshot are copied, or written to the store
+		this.snapshot = CanvasSnapshot.take(this.snapshot, current, this.mismatches, this.appliedTimestamp,
+											++this.version, this.blockVersions);
+
+		var file = this.store;
+		if (file != null && this.appliedTimestamp > 0) {
+			try {
+				file.write(current, this.appliedTimestamp, this.blockVersions, this.storedVersion);
+				this.storedVersion = this.version;
+			} catch (IllegalArgumentException e) {
+				// The canvas changed size, the snapshot file will be recreated on the next restart
+				this.store = null;
+			}
+		}
+	}
+
+	/**
+	 * Marks every block as changed in the next snapshot, after the canvas was replaced.
+	 */
+	private void touchAll(@Nonnull Canvas replaced) {
+		int count = CanvasSnapshot.blockCount(replaced.getWidth(), replaced.getHeight());
+		if (this.blockVersions.length != count)
+			this.blockVersions = new long[count];
+		Arrays.fill(this.blockVersions, this.version + 1);
+	}
+
+	private synchronized boolean isSuperseded(long batchGeneration) {
+		return batchGeneration != this.generation;
+	}
+
+	private void fail(long batchGeneration, @Nonnull Throwable error) {
+		synchronized (this) {
+			if (batchGeneration != this.generation)
+				return;
+			// The queued diffs don't line up with the canvas anymore
+			cancelQueued();
+		}
+		this.onError.accept(this.id, error);
+	}
+
+	private static record Frame(boolean full, long timestamp, @Nonnull CompletableFuture<?> body) {}
+
+}
@@ -0,0 +1,232 @@
+package placed;
+
+import static java.nio.file.StandardOpenOption.*;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.Arrays;
+
+import javax.annotation.*;
+
+import placed.Canvas.ChangeListener;
+import placed.EventLog.Category;
+
+/**
+ * Records the frame stream of every canvas into a compact append-only log that {@link FrameReplay} can read back.
+ * The log starts with {@link #MAGIC} and is followed by records:
+ *
+ * <pre>
+ * byte type        KEYFRAME or DIFF
+ * int  canvas
+ * long timestamp
+ * int  length      of the payload that follows
+ * </pre>
+ *
+ * A keyframe payload holds the width and height as varints, followed by runs of {@code (varint length, byte index)}
+ * that cover the whole canvas. A diff payload holds the number of runs as a varint, followed by runs of
+ * {@code (varint gap, varint length, byte index)}, where the gap is the distance from the end of the previous run.
+ * Diffs only contain pixels that actually changed, and every {@code keyframeInterval} diffs a canvas gets a keyframe
+ * instead, so a replay never has to go far to seek. The first frame recorded of every canvas is always a keyframe,
+ * even when it's appended to an earlier recording.
+ */
+final class FrameRecorder implements Closeable {
+
+	static final int MAGIC = 0x504c5232; // PLR2
+	static final byte KEYFRAME = 0;
+	static final byte DIFF = 1;
+
+	@Nonnull
+	private final Path path;
+	@Nonnull
+	private final DataOutputStream output;
+	@Nonnull
+	private final EventLog log;
+	private final int keyframeInterval;
+	private final ByteArrayOutputStream payload = new ByteArrayOutputStream(1 << 16);
+	private int[] sinceKeyframe = new int[0];
+	// Set when a write failed or the recorder was closed, after which frames are ignored
+	private boolean stopped;
+
+	private FrameRecorder(@Nonnull Path path, @Nonnull DataOutputStream output, @Nonnull EventLog log,
+						  int keyframeInterval) {
+		this.path = path;
+		this.output = output;
+		this.log = log;
+		this.keyframeInterval = keyframeInterval;
+	}
+
+	/**
+	 * Opens a log for appending, writing the header if it's new.
+	 *
+	 * @throws IOException
+	 *             if the file isn't empty and isn't a log of this format either
+	 */
+	@Nonnull
+	static FrameRecorder open(@Nonnull Path path, int keyframeInterval, @Nonnull EventLog log) throws IOException {
+		boolean fresh = !Files.exists(path) || Files.size(path) == 0;
+		if (!fresh) {
+			try (var input = new DataInputStream(Files.newInputStream(path))) {
+				if (Files.size(path) < 4 || input.readInt() != MAGIC)
+					throw new IOException(path + " is not a frame log of this version, refusing to append to it");
+			}
+		}
+		var output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path, CREATE, APPEND)));
+		if (fresh)
+			output.writeInt(MAGIC);
+		return new FrameRecorder(path, output, log, keyframeInterval);
+	}
+
+	synchronized void keyframe(int canvas, long timestamp, @Nonnull Canvas pixels) {
+		if (this.stopped)
+			return;
+		sinceKeyframe(canvas);
+		this.sinceKeyframe[canvas] = 0;
+
+		this.payload.reset();
+		writeVarInt(this.payload, pixels.getWidth());
+		writeVarInt(this.payload, pixels.getHeight());
+		int size = pixels.size();
+		for (int start = 0; start < size;) {
+			byte index = pixels.getAt(start);
+			int end = start + 1;
+			while (end < size && pixels.getAt(end) == index)
+				end++;
+			writeVarInt(this.payload, end - start);
+			this.payload.write(index);
+			start = end;
+		}
+		writeRecord(KEYFRAME, canvas, timestamp);
+	}
+
+	/**
+	 * Records the pixels that changed since the last recorded frame of {@code canvas}, or a keyframe of
+	 * {@code current} if one is due.
+	 */
+	synchronized void diff(int canvas, long timestamp, @Nonnull Changes changes, @Nonnull Canvas current) {
+		if (this.stopped)
+			return;
+		if (++sinceKeyframe(canvas)[canvas] >= this.keyframeInterval) {
+			keyframe(canvas, timestamp, current);
+			return;
+		}
+
+		this.payload.reset();
+		writeVarInt(this.payload, countRuns(changes));
+		int end = 0;
+		for (int i = 0; i < changes.count;) {
+			int start = changes.positions[i];
+			int length = runLength(changes, i);
+			writeVarInt(this.payload, start - end);
+			writeVarInt(this.payload, length);
+			this.payload.write(changes.indices[i]);
+			end = start + length;
+			i += length;
+		}
+		writeRecord(DIFF, canvas, timestamp);
+	}
+
+	private static int countRuns(@Nonnull Changes changes) {
+		int runs = 0;
+		for (int i = 0; i < changes.count; i += runLength(changes, i))
+			runs++;
+		return runs;
+	}
+
+	/**
+	 * @return how many changes starting at {@code i} set consecutive pixels to the same color
+	 */
+	private static int runLength(@Nonnull Changes changes, int i) {
+		int start = changes.positions[i];
+		byte index = changes.indices[i];
+		int j = i + 1;
+		while (j < changes.count && changes.positions[j] == start + (j - i) && changes.indices[j] == index)
+			j++;
+		return j - i;
+	}
+
+	private int[] sinceKeyframe(int canvas) {
+		int length = this.sinceKeyframe.length;
+		if (canvas >= length) {
+			// A canvas we haven't recorded yet is due for a keyframe, its diffs couldn't be replayed without one
+			this.sinceKeyframe = Arrays.copyOf(this.sinceKeyframe, canvas + 1);
+			Arrays.fill(this.sinceKeyframe, length, canvas + 1, this.keyframeInterval);
+		}
+		return this.sinceKeyframe;
+	}
+
+	private void writeRecord(byte type, int canvas, long timestamp) {
+		try {
+			this.output.writeByte(type);
+			this.output.writeInt(canvas);
+			this.output.writeLong(timestamp);
+			this.output.writeInt(this.payload.size());
+			this.payload.writeTo(this.output);
+			this.output.flush();
+
+		} catch (IOException e) {
+			// Recording is optional, so we'd rather lose it than the canvas
+			this.stopped = true;
+			this.log.error(Category.RECORDER, "Couldn't write to %s, recording stopped: %s", this.path, e.getMessage());
+		}
+	}
+
+	static void writeVarInt(@Nonnull OutputStream stream, int value) {
+		try {
+			while ((value & ~0x7f) != 0) {
+				stream.write(value & 0x7f | 0x80);
+				value >>>= 7;
+			}
+			stream.write(value);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	static int readVarInt(@Nonnull DataInput input) throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			int b = input.readUnsignedByte();
+			value |= (b & 0x7f) << shift;
+			if ((b & 0x80) == 0)
+				return value;
+		}
+		throw new IOException("Malformed varint");
+	}
+
+	/**
+	 * Closes the log. Frames recorded after this are ignored, so pipelines that are still running can't fail on it.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		this.stopped = true;
+		this.output.close();
+	}
+
+	/**
+	 * Collects the pixels a frame changed, in the order they were changed. Frames are applied in row-major order, so
+	 * the positions come in ascending.
+	 */
+	static final class Changes implements ChangeListener {
+
+		int[] positions = new int[1024];
+		byte[] indices = new byte[1024];
+		int count;
+
+		@Override
+		public void changed(int position, byte index) {
+			if (this.count == this.positions.length) {
+				this.positions = Arrays.copyOf(this.positions, this.count * 2);
+				this.indices = Arrays.copyOf(this.indices, this.count * 2);
+			}
+			this.positions[this.count] = position;
+			this.indices[this.count] = index;
+			this.count++;
+		}
+
+		void clear() {
+			this.count = 0;
+		}
+
+	}
+
+}
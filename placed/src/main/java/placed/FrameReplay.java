@@ -0,0 +1,223 @@
+package placed;
+
+import static java.lang.System.out;
+import static placed.FrameRecorder.*;
+
+import java.io.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.*;
+
+import javax.annotation.*;
+import javax.imageio.ImageIO;
+
+import placed.EventLog.Category;
+
+/**
+ * Reads back a log written by {@link FrameRecorder}. Opening a log scans it once to index the keyframes of every
+ * canvas, so {@link #canvasAt(int, long)} only has to replay the diffs after the closest keyframe.
+ */
+final class FrameReplay implements Closeable {
+
+	private static final int HEADER_SIZE = 17;
+
+	@Nonnull
+	private final Path path;
+	@Nonnull
+	private final FileChannel channel;
+	@Nonnull
+	private final Map<Integer, List<long[]>> keyframes;
+
+	private FrameReplay(@Nonnull Path path, @Nonnull FileChannel channel,
+						@Nonnull Map<Integer, List<long[]>> keyframes) {
+		this.path = path;
+		this.channel = channel;
+		this.keyframes = keyframes;
+	}
+
+	@Nonnull
+	static FrameReplay open(@Nonnull Path path) throws IOException {
+		var channel = FileChannel.open(path, StandardOpenOption.READ);
+		var keyframes = new HashMap<Integer, List<long[]>>();
+		try (var input = stream(channel, 0)) {
+			if (input.readInt() != MAGIC)
+				throw new IOException(path + " is not a frame log");
+			long offset = 4;
+			while (true) {
+				int type = input.read();
+				if (type < 0)
+					break;
+				int canvas = input.readInt();
+				long timestamp = input.readLong();
+				int length = input.readInt();
+				if (type == KEYFRAME)
+					keyframes.computeIfAbsent(canvas, c -> new ArrayList<>()).add(new long[] { timestamp, offset });
+				input.skipNBytes(length);
+				offset += HEADER_SIZE + length;
+			}
+
+		} catch (EOFException e) {
+			// The last record was cut off, probably by a crash while recording
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+		return new FrameReplay(path, channel, keyframes);
+	}
+
+	/**
+	 * @return the canvas as it was after the last frame at or before {@code timestamp}, or {@code null} if there was
+	 *         no keyframe of it by then
+	 */
+	@Nullable
+	Canvas canvasAt(int canvas, long timestamp) throws IOException {
+		var candidates = this.keyframes.getOrDefault(canvas, List.of());
+		long[] start = null;
+		for (var keyframe : candidates) {
+			if (keyframe[0] > timestamp)
+				break;
+			start = keyframe;
+		}
+		if (start == null)
+			return null;
+
+		// The frames of other canvases are interleaved with ours, only our own tell when we're past the timestamp
+		var result = new Canvas[1];
+		replay(start[1], new FrameVisitor() {
+
+			@Override
+			public boolean keyframe(int id, long time, @Nonnull Canvas pixels) {
+				if (id != canvas)
+					return true;
+				if (time > timestamp)
+					return false;
+				result[0] = pixels;
+				return true;
+			}
+
+			@Override
+			public boolean diff(int id, long time, @Nonnull int[] positions, @Nonnull byte[] indices, int count) {
+				if (id != canvas)
+					return true;
+				if (time > timestamp)
+					return false;
+				for (int i = 0; i < count; i++)
+					result[0].setAt(positions[i], indices[i]);
+				return true;
+			}
+
+		});
+		return result[0];
+	}
+
+	/**
+	 * Replays every recorded frame in order, until the visitor returns {@code false}.
+	 */
+	void replay(@Nonnull FrameVisitor visitor) throws IOException {
+		replay(4, visitor);
+	}
+
+	private void replay(long offset, @Nonnull FrameVisitor visitor) throws IOException {
+		var positions = new int[1024];
+		var indices = new byte[1024];
+		try (var input = stream(this.channel, offset)) {
+			while (true) {
+				int type = input.read();
+				if (type < 0)
+					return;
+				int canvas = input.readInt();
+				long timestamp = input.readLong();
+				input.readInt();
+
+				if (type == KEYFRAME) {
+					var pixels = new Canvas(readVarInt(input), readVarInt(input));
+					for (int position = 0; position < pixels.size();) {
+						int length = readVarInt(input);
+						byte index = input.readByte();
+						for (int end = position + length; position < end; position++)
+							pixels.setAt(position, index);
+					}
+					if (!visitor.keyframe(canvas, timestamp, pixels))
+						return;
+
+				} else {
+					int runs = readVarInt(input);
+					int count = 0;
+					int position = 0;
+					for (int run = 0; run < runs; run++) {
+						position += readVarInt(input);
+						int length = readVarInt(input);
+						byte index = input.readByte();
+						if (count + length > positions.length) {
+							positions = Arrays.copyOf(positions, Math.max(positions.length * 2, count + length));
+							indices = Arrays.copyOf(indices, positions.length);
+						}
+						for (int i = 0; i < length; i++, position++, count++) {
+							positions[count] = position;
+							indices[count] = index;
+						}
+					}
+					if (!visitor.diff(canvas, timestamp, positions, indices, count))
+						return;
+				}
+			}
+
+		} catch (EOFException e) {
+			// Cut off, same as when indexing
+		}
+	}
+
+	@Nonnull
+	private static DataInputStream stream(@Nonnull FileChannel channel, long offset) throws IOException {
+		// The stream must not close the channel we keep reusing
+		var shielded = new FilterInputStream(Channels.newInputStream(channel.position(offset))) {
+
+			@Override
+			public void close() {}
+
+		};
+		return new DataInputStream(new BufferedInputStream(shielded, 1 << 16));
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.channel.close();
+	}
+
+	interface FrameVisitor {
+
+		/**
+		 * @return whether to keep replaying
+		 */
+		boolean keyframe(int canvas, long timestamp, @Nonnull Canvas pixels);
+
+		/**
+		 * Receives the pixels a diff changed. The arrays are reused between calls.
+		 *
+		 * @return whether to keep replaying
+		 */
+		boolean diff(int canvas, long timestamp, @Nonnull int[] positions, @Nonnull byte[] indices, int count);
+
+	}
+
+	/**
+	 * Renders a canvas from a log as it was at some point in time.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 4) {
+			out.println("Usage: FrameReplay <log> <canvas> <timestamp> <output.png>");
+			return;
+		}
+		try (var replay = open(Paths.get(args[0]))) {
+			var canvas = replay.canvasAt(Integer.parseInt(args[1]), Long.parseLong(args[2]));
+			if (canvas == null) {
+				// Flushed by the log's shutdown hook
+				new EventLog(out, 16).error(Category.REPLAY, "%s has no keyframe of canvas %s by %s", replay.path,
+											args[1], args[2]);
+				return;
+			}
+			ImageIO.write(canvas.toImage(), "png", new File(args[3]));
+		}
+	}
+
+}
@@ -0,0 +1,199 @@
+package placed;
+
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+
+import javax.annotation.*;
+
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A small registry of runtime metrics, served over HTTP in the Prometheus text format. Counters and histograms are
+ * updated lock-free on the hot paths; gauges are read from their suppliers only when the metrics are scraped.
+ * <p>
+ * Every metric is a family of series told apart by a label set, which is passed in already formatted, eg.
+ * {@code canvas="0",state="good"}. {@link #labels(Object...)} builds one from name-value pairs, and the empty string
+ * stands for a series without labels.
+ */
+final class Metrics {
+
+	/**
+	 * Latency buckets in seconds, from a tenth of a millisecond up to ten seconds.
+	 */
+	static final double[] LATENCY_BUCKETS =
+		{ 0.0001, 0.00025, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10 };
+
+	private final List<Consumer<StringBuilder>> families = new CopyOnWriteArrayList<>();
+
+	/**
+	 * Builds a label set out of alternating names and values.
+	 */
+	@Nonnull
+	static String labels(@Nonnull Object... pairs) {
+		var joiner = new StringJoiner(",");
+		for (int i = 0; i + 1 < pairs.length; i += 2)
+			joiner.add(format("%s=\"%s\"", pairs[i], escape(String.valueOf(pairs[i + 1]))));
+		return joiner.toString();
+	}
+
+	@Nonnull
+	Counter counter(@Nonnull String name, @Nonnull String help) {
+		var counter = new Counter();
+		this.families.add(out -> {
+			header(out, name, help, "counter");
+			counter.series.forEach((labels, value) -> sample(out, name, labels, value.sum()));
+		});
+		return counter;
+	}
+
+	@Nonnull
+	Histogram histogram(@Nonnull String name, @Nonnull String help, @Nonnull double[] buckets) {
+		var histogram = new Histogram(buckets);
+		this.families.add(out -> {
+			header(out, name, help, "histogram");
+			histogram.series.forEach((labels, series) -> series.write(out, name, labels, buckets));
+		});
+		return histogram;
+	}
+
+	/**
+	 * Registers a gauge. {@code values} is called on every scrape and returns the current value of each series, keyed
+	 * by its label set.
+	 */
+	void gauge(@Nonnull String name, @Nonnull String help, @Nonnull Supplier<Map<String, ? extends Number>> values) {
+		this.families.add(out -> {
+			header(out, name, help, "gauge");
+			values.get().forEach((labels, value) -> sample(out, name, labels, value.doubleValue()));
+		});
+	}
+
+	/**
+	 * @return every metric in the Prometheus text format
+	 */
+	@Nonnull
+	String scrape() {
+		var out = new StringBuilder(4096);
+		for (var family : this.families)
+			family.accept(out);
+		return out.toString();
+	}
+
+	/**
+	 * Serves {@link #scrape()} on {@code /metrics}.
+	 */
+	@Nonnull
+	HttpServer serve(@Nonnull InetSocketAddress address) throws IOException {
+		var server = HttpServer.create(address, 0);
+		server.createContext("/metrics", exchange -> {
+			var body = scrape().getBytes(UTF_8);
+			exchange.getResponseHeaders().add("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+			exchange.sendResponseHeaders(200, body.length);
+			try (var out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+		});
+		server.start();
+		return server;
+	}
+
+	private static void header(@Nonnull StringBuilder out, @Nonnull String name, @Nonnull String help,
+							   @Nonnull String type) {
+		out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+		out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+	}
+
+	private static void sample(@Nonnull StringBuilder out, @Nonnull String name, @Nonnull String labels,
+							   double value) {
+		out.append(name);
+		if (!labels.isEmpty())
+			out.append('{').append(labels).append('}');
+		out.append(' ');
+		if (value == Math.rint(value) && !Double.isInfinite(value))
+			out.append((long) value);
+		else
+			out.append(value);
+		out.append('\n');
+	}
+
+	@Nonnull
+	private static String escape(@Nonnull String value) {
+		return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+	}
+
+	/**
+	 * A monotonically increasing count per label set.
+	 */
+	static final class Counter {
+
+		private final Map<String, LongAdder> series = new ConcurrentSkipListMap<>();
+
+		void increment(@Nonnull String labels) {
+			this.series.computeIfAbsent(labels, l -> new LongAdder()).increment();
+		}
+
+	}
+
+	/**
+	 * A distribution of observed values per label set, in fixed buckets.
+	 */
+	static final class Histogram {
+
+		@Nonnull
+		private final double[] buckets;
+		private final Map<String, Series> series = new ConcurrentSkipListMap<>();
+
+		private Histogram(@Nonnull double[] buckets) {
+			this.buckets = buckets;
+		}
+
+		/**
+		 * Records a duration measured with {@link System#nanoTime()}, in seconds.
+		 */
+		void observeNanos(@Nonnull String labels, long nanos) {
+			observe(labels, nanos / 1e9);
+		}
+
+		void observe(@Nonnull String labels, double value) {
+			var counts = this.series.computeIfAbsent(labels, l -> new Series(this.buckets.length));
+			int bucket = Arrays.binarySearch(this.buckets, value);
+			// The bucket with the smallest upper bound that still fits the value, or +Inf past the last one
+			counts.counts.incrementAndGet(bucket >= 0 ? bucket : -bucket - 1);
+			counts.sum.add(value);
+		}
+
+		private static final class Series {
+
+			// Per bucket, not cumulative, the last one is +Inf
+			@Nonnull
+			private final AtomicLongArray counts;
+			private final DoubleAdder sum = new DoubleAdder();
+
+			Series(int buckets) {
+				this.counts = new AtomicLongArray(buckets + 1);
+			}
+
+			void write(@Nonnull StringBuilder out, @Nonnull String name, @Nonnull String labels,
+					   @Nonnull double[] buckets) {
+				var prefix = labels.isEmpty() ? "" : labels + ",";
+				long cumulative = 0;
+				for (int i = 0; i < this.counts.length(); i++) {
+					cumulative += this.counts.get(i);
+					var bound = i < buckets.length ? Double.toString(buckets[i]) : "+Inf";
+					sample(out, name + "_bucket", prefix + "le=\"" + bound + "\"", cumulative);
+				}
+				sample(out, name + "_sum", labels, this.sum.sum());
+				sample(out, name + "_count", labels, cumulative);
+			}
+
+		}
+
+	}
+
+}
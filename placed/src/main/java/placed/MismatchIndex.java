@@ -0,0 +1,68 @@
+package placed;
+
+import java.util.BitSet;
+
+import javax.annotation.*;
+
+/**
+ * Keeps track of which target pixels a canvas doesn't match. The index is built once from a full frame with
+ * {@link #rebuild(Canvas, Target)} and then kept up to date with {@link #update(int, byte)} for every pixel a diff
+ * frame changes, so finding work doesn't need to rescan the whole canvas. It belongs to the thread that writes the
+ * canvas, readers get a copy of it in a {@link CanvasSnapshot}.
+ */
+final class MismatchIndex {
+
+	@Nonnull
+	private BitSet mismatches = new BitSet();
+	@Nullable
+	private Target target;
+	private int count;
+
+	/**
+	 * Rebuilds the index from scratch. Needs to be called whenever the canvas is replaced by a full frame or the
+	 * target is reloaded.
+	 */
+	void rebuild(@Nonnull Canvas canvas, @Nonnull Target target) {
+		var words = new long[(canvas.size() + 63) >>> 6];
+		this.target = target;
+		this.count = target.findMismatches(canvas, words);
+		this.mismatches = BitSet.valueOf(words);
+	}
+
+	/**
+	 * Records that the pixel at {@code position} has changed to {@code index}.
+	 */
+	void update(int position, byte index) {
+		var want = this.target;
+		if (want == null)
+			return;
+
+		byte expected = want.getAt(position);
+		boolean mismatch = expected != Canvas.NONE && expected != index;
+		if (mismatch != this.mismatches.get(position)) {
+			this.mismatches.set(position, mismatch);
+			this.count += mismatch ? 1 : -1;
+		}
+	}
+
+	boolean isMismatch(int position) {
+		return this.mismatches.get(position);
+	}
+
+	@Nullable
+	Target getTarget() {
+		return this.target;
+	}
+
+	int count() {
+		return this.count;
+	}
+
+	/**
+	 * @return the first mismatching position from {@code from} on, or -1 if there's none
+	 */
+	int nextMismatch(int from) {
+		return this.mismatches.nextSetBit(from);
+	}
+
+}
@@ -0,0 +1,584 @@
+package placed;
+
+import static java.lang.Integer.getInteger;
+import static java.lang.String.format;
+import static java.lang.System.*;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.Executors.*;
+import static java.util.concurrent.TimeUnit.*;
+
+import java.io.*;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.security.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.regex.Pattern;
+import java.util.zip.*;
+
+import javax.annotation.*;
+
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.*;
+
+import placed.Placed.Color;
+
+/**
+ * A local stand-in for the login, GQL and WebSocket endpoints, for integration and performance tests that shouldn't
+ * touch the real service. Every canvas gets a synthetic frame stream: subscribers are sent a full frame, and then a
+ * diff frame that repaints some random pixels at a fixed rate. The frames themselves are served as indexed PNGs over
+ * HTTP, and a diff frame only costs deflating a mostly transparent buffer that's reused between frames.
+ * <p>
+ * The mock is configured with system properties:
+ * <ul>
+ * <li>{@code placed.mock.port}, the HTTP port; the WebSocket listens on the one after it (8080)
+ * <li>{@code placed.mock.canvases}, the number of canvases (3)
+ * <li>{@code placed.mock.size}, the width and height of each canvas (1000)
+ * <li>{@code placed.mock.rate}, diff frames per second per canvas (10)
+ * <li>{@code placed.mock.pixels}, pixels changed per diff frame (100)
+ * <li>{@code placed.mock.drop}, the chance of a diff frame not being sent, to exercise resyncs (0)
+ * <li>{@code placed.mock.cooldown}, the pixel cooldown handed out in milliseconds (5000)
+ * </ul>
+ */
+final class MockServer {
+
+	private static final String WEBSOCKET_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+	private static final Pattern ID = Pattern.compile("\"id\"\\s*:\\s*\"(\\d+)\"");
+	private static final int STORED_FRAMES = 1024;
+	private static final int KEEPALIVE_INTERVAL = 20;
+	private static final int HTTP_THREADS = 16;
+	private static final byte[] PNG_SIGNATURE = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n' };
+	private static final byte[] PNG_PALETTE = pngPalette();
+	private static final byte[] PNG_TRANSPARENCY = pngTransparency();
+
+	private final int port;
+	private final int size;
+	private final int pixels;
+	private final double drop;
+	private final long cooldown;
+	@Nonnull
+	private final MockCanvas[] canvases;
+	// Ticks encode their frames, so they get a thread per canvas (up to a core each), apart from the keepalives
+	@Nonnull
+	private final ScheduledExecutorService ticker;
+	private final ScheduledExecutorService keepalives = newSingleThreadScheduledExecutor();
+	private final ExecutorService http = newFixedThreadPool(HTTP_THREADS);
+	private final ExecutorService connections = newCachedThreadPool();
+	// Frame PNGs by name, the oldest ones are evicted
+	private final Map<String, byte[]> frames = Collections.synchronizedMap(new LinkedHashMap<>() {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+			return size() > STORED_FRAMES;
+		}
+
+	});
+
+	MockServer(int port, int canvasCount, int size, int pixels, double drop, long cooldown) {
+		this.port = port;
+		this.size = size;
+		this.pixels = pixels;
+		this.drop = drop;
+		this.cooldown = cooldown;
+		this.canvases = new MockCanvas[canvasCount];
+		this.ticker = newScheduledThreadPool(Math.max(1, Math.min(canvasCount,
+																  Runtime.getRuntime().availableProcessors())));
+		var random = new Random(0);
+		for (int i = 0; i < canvasCount; i++)
+			this.canvases[i] = new MockCanvas(i, random.nextLong());
+	}
+
+	public static void main(String[] args) throws IOException {
+		var server = new MockServer(getInteger("placed.mock.port", 8080), getInteger("placed.mock.canvases", 3),
+									getInteger("placed.mock.size", 1000), getInteger("placed.mock.pixels", 100),
+									Double.parseDouble(getProperty("placed.mock.drop", "0")),
+									Long.getLong("placed.mock.cooldown", 5000));
+		server.start(getInteger("placed.mock.rate", 10));
+		out.printf("""
+			[  MOCK  ] INFO Listening, point the bot at it with
+			  -Dplaced.login=http://localhost:%1$d/api/login/ -Dplaced.token=http://localhost:%1$d/chat/minimize
+			  -Dplaced.gql=http://localhost:%1$d/query -Dplaced.ws=ws://localhost:%2$d/query
+			and any accounts, keeping the snapshots apart from the real ones with
+			  -Dplaced.users=<file> -Dplaced.snapshots=<directory>%n""", server.port, server.port + 1);
+	}
+
+	void start(int rate) throws IOException {
+		var http = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), this.port), 0);
+		http.createContext("/api/login/", this::login);
+		http.createContext("/chat/minimize", this::token);
+		http.createContext("/query", this::query);
+		http.createContext("/frames/", this::frame);
+		http.setExecutor(this.http);
+		http.start();
+
+		var socket = new ServerSocket(this.port + 1, 50, InetAddress.getLoopbackAddress());
+		this.connections.execute(() -> accept(socket));
+
+		long period = Math.max(1, 1_000_000 / rate);
+		for (var canvas : this.canvases)
+			this.ticker.scheduleAtFixedRate(canvas::tick, period, period, MICROSECONDS);
+	}
+
+	///////////
+	// HTTP //
+	///////////
+
+	private void login(@Nonnull HttpExchange exchange) throws IOException {
+		exchange.getRequestBody().readAllBytes();
+		var user = exchange.getRequestURI().getPath().substring("/api/login/".length());
+		exchange.getResponseHeaders().add("Set-Cookie", "session=" + user + "; Path=/");
+		respond(exchange, 200, "application/json", format("{\"json\":{\"data\":{\"cookie\":\"%s\"}}}", user));
+	}
+
+	private void token(@Nonnull HttpExchange exchange) throws IOException {
+		// The bot only reads the subject out of the JWT's payload
+		var encoder = Base64.getEncoder().withoutPadding();
+		var payload = encoder.encodeToString(format("{\"sub\":\"mock-%d\"}", nanoTime()).getBytes(UTF_8));
+		var jwt = encoder.encodeToString("{}".getBytes(UTF_8)) + "." + payload + ".mock";
+		exchange.getResponseHeaders().add("Set-Cookie", "token_v2=" + jwt + "; Path=/");
+		respond(exchange, 200, "text/html", "<html></html>");
+	}
+
+	private void query(@Nonnull HttpExchange exchange) throws IOException {
+		exchange.getRequestBody().readAllBytes();
+		respond(exchange, 200, "application/json",
+				format("{\"data\":{\"act\":{\"data\":[{\"data\":{\"nextAvailablePixelTimestamp\":%d}}]}}}",
+					   currentTimeMillis() + this.cooldown));
+	}
+
+	private void frame(@Nonnull HttpExchange exchange) throws IOException {
+		var png = this.frames.get(exchange.getRequestURI().getPath().substring("/frames/".length()));
+		if (png == null) {
+			respond(exchange, 404, "text/plain", "No such frame");
+			return;
+		}
+		exchange.getResponseHeaders().add("Content-Type", "image/png");
+		exchange.sendResponseHeaders(200, png.length);
+		try (var body = exchange.getResponseBody()) {
+			body.write(png);
+		}
+	}
+
+	private static void respond(@Nonnull HttpExchange exchange, int status, @Nonnull String type,
+								@Nonnull String body) throws IOException {
+		var bytes = body.getBytes(UTF_8);
+		exchange.getResponseHeaders().add("Content-Type", type);
+		// Responses always have a body: without one (a -1 length) the server can close a kept-alive connection under
+		// the next request, which the client then reports as a NoHttpResponseException
+		exchange.sendResponseHeaders(status, bytes.length);
+		try (var out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+
+	////////////////
+	// WebSocket //
+	////////////////
+
+	private void accept(@Nonnull ServerSocket server) {
+		while (!server.isClosed()) {
+			try {
+				var socket = server.accept();
+				socket.setTcpNoDelay(true);
+				this.connections.execute(() -> {
+					try (var connection = new MockConnection(socket)) {
+						connection.run();
+					} catch (IOException e) {
+						// The client went away
+					}
+				});
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	private final class MockConnection implements Closeable {
+
+		@Nonnull
+		private final Socket socket;
+		@Nonnull
+		private final DataInputStream in;
+		@Nonnull
+		private final OutputStream out;
+		private final Set<MockCanvas> subscriptions = ConcurrentHashMap.newKeySet();
+		@Nullable
+		private ScheduledFuture<?> keepalive;
+
+		MockConnection(@Nonnull Socket socket) throws IOException {
+			this.socket = socket;
+			this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			this.out = new BufferedOutputStream(socket.getOutputStream());
+		}
+
+		void run() throws IOException {
+			handshake();
+			var message = new ByteArrayOutputStream();
+			while (true) {
+				int head = this.in.readUnsignedByte();
+				int opcode = head & 0x0f;
+				var payload = readPayload();
+				switch (opcode) {
+					case 0x0, 0x1 -> {
+						message.write(payload);
+						if ((head & 0x80) != 0) {
+							onText(message.toString(UTF_8));
+							message.reset();
+						}
+					}
+					case 0x8 -> {
+						send(0x8, payload);
+						return;
+					}
+					case 0x9 -> send(0xa, payload);
+					default -> { /* pongs and anything else */ }
+				}
+			}
+		}
+
+		private void handshake() throws IOException {
+			String key = null;
+			String line;
+			while ((line = readLine()) != null && !line.isEmpty()) {
+				int colon = line.indexOf(':');
+				if (colon > 0 && line.substring(0, colon).trim().equalsIgnoreCase("Sec-WebSocket-Key"))
+					key = line.substring(colon + 1).trim();
+			}
+			if (key == null)
+				throw new IOException("Not a WebSocket handshake");
+
+			String accept;
+			try {
+				var digest = MessageDigest.getInstance("SHA-1").digest((key + WEBSOCKET_GUID).getBytes(UTF_8));
+				accept = Base64.getEncoder().encodeToString(digest);
+			} catch (NoSuchAlgorithmException e) {
+				throw new IllegalStateException(e);
+			}
+			synchronized (this) {
+				this.out.write(format("""
+					HTTP/1.1 101 Switching Protocols\r
+					Upgrade: websocket\r
+					Connection: Upgrade\r
+					Sec-WebSocket-Accept: %s\r
+					\r
+					""", accept).getBytes(UTF_8));
+				this.out.flush();
+			}
+		}
+
+		@Nullable
+		private String readLine() throws IOException {
+			var line = new ByteArrayOutputStream();
+			int b;
+			while ((b = this.in.read()) != '\n') {
+				if (b < 0)
+					return null;
+				if (b != '\r')
+					line.write(b);
+			}
+			return line.toString(UTF_8);
+		}
+
+		@Nonnull
+		private byte[] readPayload() throws IOException {
+			int second = this.in.readUnsignedByte();
+			long length = second & 0x7f;
+			if (length == 126)
+				length = this.in.readUnsignedShort();
+			else if (length == 127)
+				length = this.in.readLong();
+			if (length > 1 << 24)
+				throw new IOException("WebSocket frame too large");
+
+			var mask = new byte[4];
+			boolean masked = (second & 0x80) != 0;
+			if (masked)
+				this.in.readFully(mask);
+			var payload = new byte[(int) length];
+			this.in.readFully(payload);
+			if (masked) {
+				for (int i = 0; i < payload.length; i++)
+					payload[i] ^= mask[i & 3];
+			}
+			return payload;
+		}
+
+		private void onText(@Nonnull String text) throws IOException {
+			var json = JsonParser.parseString(text).getAsJsonObject();
+			switch (json.get("type").getAsString()) {
+				case "connection_init" -> {
+					sendText("{\"type\":\"connection_ack\"}");
+					this.keepalive = MockServer.this.keepalives.scheduleAtFixedRate(() -> {
+						try {
+							sendText("{\"type\":\"ka\"}");
+						} catch (IOException e) {
+							close();
+						}
+					}, KEEPALIVE_INTERVAL, KEEPALIVE_INTERVAL, SECONDS);
+				}
+				case "start" -> {
+					if (text.contains("\"CONFIG\"")) {
+						sendText(configuration(json.get("id").getAsString()));
+						return;
+					}
+					int id = Integer.parseInt(json.get("id").getAsString());
+					if (id >= 0 && id < MockServer.this.canvases.length) {
+						var canvas = MockServer.this.canvases[id];
+						this.subscriptions.add(canvas);
+						canvas.subscribe(this);
+					} else {
+						sendText(format("{\"type\":\"error\",\"id\":\"%d\",\"payload\":{}}", id));
+					}
+				}
+				case "stop" -> {
+					var matcher = ID.matcher(text);
+					if (matcher.find()) {
+						int id = Integer.parseInt(matcher.group(1));
+						if (id >= 0 && id < MockServer.this.canvases.length) {
+							MockServer.this.canvases[id].unsubscribe(this);
+							this.subscriptions.remove(MockServer.this.canvases[id]);
+						}
+					}
+				}
+				default -> { /* nothing else is expected from the bot */ }
+			}
+		}
+
+		void sendText(@Nonnull String text) throws IOException {
+			send(0x1, text.getBytes(UTF_8));
+		}
+
+		private synchronized void send(int opcode, @Nonnull byte[] payload) throws IOException {
+			this.out.write(0x80 | opcode);
+			if (payload.length < 126) {
+				this.out.write(payload.length);
+			} else if (payload.length <= 0xffff) {
+				this.out.write(126);
+				this.out.write(payload.length >>> 8);
+				this.out.write(payload.length);
+			} else {
+				this.out.write(127);
+				for (int shift = 56; shift >= 0; shift -= 8)
+					this.out.write((int) ((long) payload.length >>> shift));
+			}
+			this.out.write(payload);
+			this.out.flush();
+		}
+
+		@Override
+		public void close() {
+			var task = this.keepalive;
+			if (task != null)
+				task.cancel(false);
+			for (var canvas : this.subscriptions)
+				canvas.unsubscribe(this);
+			try {
+				this.socket.close();
+			} catch (IOException e) {
+				// Already closed
+			}
+		}
+
+	}
+
+	/**
+	 * Lays the canvases out in rows of two, like the real ones.
+	 */
+	@Nonnull
+	private String configuration(@Nonnull String id) {
+		var placements = new StringJoiner(",");
+		for (int i = 0; i < this.canvases.length; i++)
+			placements.add(format("{\"index\":%d,\"dx\":%d,\"dy\":%d}", i, i % 2 * this.size, i / 2 * this.size));
+		return format("{\"type\":\"data\",\"id\":\"%s\",\"payload\":{\"data\":{\"subscribe\":{\"id\":\"%1$s\","
+			+ "\"data\":{\"__typename\":\"ConfigurationMessageData\",\"canvasConfigurations\":[%s],"
+			+ "\"canvasWidth\":%d,\"canvasHeight\":%3$d}}}}}", id, placements, this.size);
+	}
+
+	/////////////
+	// Frames //
+	/////////////
+
+	private final class MockCanvas {
+
+		private final int id;
+		@Nonnull
+		private final Random random;
+		@Nonnull
+		private final Canvas canvas;
+		private final Set<MockConnection> subscribers = ConcurrentHashMap.newKeySet();
+		// The scanlines of the next diff frame, all transparent but for the pixels of the current tick
+		@Nonnull
+		private final byte[] diff;
+		@Nonnull
+		private final int[] changed;
+		private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		private long timestamp = currentTimeMillis();
+
+		MockCanvas(int id, long seed) {
+			this.id = id;
+			this.random = new Random(seed);
+			this.canvas = new Canvas(MockServer.this.size, MockServer.this.size);
+			var colors = Color.values();
+			for (int i = 0; i < this.canvas.size(); i++)
+				this.canvas.setAt(i, (byte) colors[this.random.nextInt(colors.length)].getIndex());
+			this.diff = new byte[(MockServer.this.size + 1) * MockServer.this.size];
+			Arrays.fill(this.diff, Canvas.NONE);
+			for (int row = 0; row < MockServer.this.size; row++)
+				this.diff[scanline(row)] = 0;
+			this.changed = new int[MockServer.this.pixels];
+		}
+
+		/**
+		 * Sends the subscriber a full frame of the current canvas, after which it gets every diff.
+		 */
+		synchronized void subscribe(@Nonnull MockConnection connection) throws IOException {
+			var name = format("%d-full-%d.png", this.id, this.timestamp);
+			int size = MockServer.this.size;
+			var scanlines = new byte[this.diff.length];
+			var source = this.canvas.getPixels();
+			for (int row = 0; row < size; row++)
+				System.arraycopy(source, row * size, scanlines, scanline(row) + 1, size);
+			MockServer.this.frames.put(name, encode(scanlines));
+			connection.sendText(message("FullFrameMessageData", name, format("\"timestamp\":%d", this.timestamp)));
+			this.subscribers.add(connection);
+		}
+
+		void unsubscribe(@Nonnull MockConnection connection) {
+			this.subscribers.remove(connection);
+		}
+
+		synchronized void tick() {
+			try {
+				var colors = Color.values();
+				for (int i = 0; i < this.changed.length; i++) {
+					int position = this.random.nextInt(this.canvas.size());
+					byte index = (byte) colors[this.random.nextInt(colors.length)].getIndex();
+					this.changed[i] = position;
+					this.canvas.setAt(position, index);
+				}
+
+				long previous = this.timestamp;
+				// Frame timestamps have to keep increasing, even with more than one diff per millisecond
+				this.timestamp = Math.max(previous + 1, currentTimeMillis());
+				if (this.subscribers.isEmpty() || this.random.nextDouble() < MockServer.this.drop)
+					return;
+
+				var name = format("%d-diff-%d.png", this.id, this.timestamp);
+				for (int position : this.changed)
+					this.diff[pixel(position)] = this.canvas.getAt(position);
+				byte[] png;
+				try {
+					png = encode(this.diff);
+				} finally {
+					for (int position : this.changed)
+						this.diff[pixel(position)] = Canvas.NONE;
+				}
+				MockServer.this.frames.put(name, png);
+				var message = message("DiffFrameMessageData", name, format("\"previousTimestamp\":%d,\"currentTimestamp\":%d",
+																		 previous, this.timestamp));
+				for (var subscriber : this.subscribers) {
+					try {
+						subscriber.sendText(message);
+					} catch (IOException e) {
+						subscriber.close();
+					}
+				}
+
+			} catch (Exception e) { // NOSONAR an exception would cancel the ticker
+				e.printStackTrace();
+			}
+		}
+
+		@Nonnull
+		private String message(@Nonnull String type, @Nonnull String name, @Nonnull String timestamps) {
+			var url = format("http://localhost:%d/frames/%s", MockServer.this.port, name);
+			return format("{\"type\":\"data\",\"id\":\"%d\",\"payload\":{\"data\":{\"subscribe\":{\"id\":\"%d\","
+				+ "\"data\":{\"__typename\":\"%s\",\"name\":\"%s\",%s},\"__typename\":\"BasicMessage\"}}}}", this.id,
+						  this.id, type, url, timestamps);
+		}
+
+		/**
+		 * @return where a row starts in the scanlines, at its filter type byte
+		 */
+		private int scanline(int row) {
+			return row * (MockServer.this.size + 1);
+		}
+
+		/**
+		 * @return where a canvas position is in the scanlines
+		 */
+		private int pixel(int position) {
+			int size = MockServer.this.size;
+			return scanline(position / size) + 1 + position % size;
+		}
+
+		/**
+		 * Encodes unfiltered scanlines of palette indices as an indexed PNG, where {@link Canvas#NONE} is transparent.
+		 */
+		@Nonnull
+		private byte[] encode(@Nonnull byte[] scanlines) throws IOException {
+			this.deflater.reset();
+			this.deflater.setInput(scanlines);
+			this.deflater.finish();
+			var compressed = new ByteArrayOutputStream();
+			var buffer = new byte[8192];
+			while (!this.deflater.finished())
+				compressed.write(buffer, 0, this.deflater.deflate(buffer));
+
+			var png = new ByteArrayOutputStream(compressed.size() + 1024);
+			var out = new DataOutputStream(png);
+			out.write(PNG_SIGNATURE);
+			// 8-bit indexed color, not interlaced
+			var header = ByteBuffer.allocate(13).putInt(MockServer.this.size).putInt(MockServer.this.size).put((byte) 8)
+				.put((byte) 3);
+			chunk(out, "IHDR", header.array());
+			chunk(out, "PLTE", PNG_PALETTE);
+			chunk(out, "tRNS", PNG_TRANSPARENCY);
+			chunk(out, "IDAT", compressed.toByteArray());
+			chunk(out, "IEND", new byte[0]);
+			return png.toByteArray();
+		}
+
+	}
+
+	private static void chunk(@Nonnull DataOutputStream out, @Nonnull String type,
+							  @Nonnull byte[] data) throws IOException {
+		var name = type.getBytes(UTF_8);
+		var crc = new CRC32();
+		crc.update(name);
+		crc.update(data);
+		out.writeInt(data.length);
+		out.write(name);
+		out.write(data);
+		out.writeInt((int) crc.getValue());
+	}
+
+	/**
+	 * @return every palette entry, indexed the same as the canvas, the unused ones black
+	 */
+	@Nonnull
+	private static byte[] pngPalette() {
+		var palette = new byte[256 * 3];
+		for (var color : Color.values()) {
+			int rgb = color.getRgb();
+			palette[color.getIndex() * 3] = (byte) (rgb >> 16);
+			palette[color.getIndex() * 3 + 1] = (byte) (rgb >> 8);
+			palette[color.getIndex() * 3 + 2] = (byte) rgb;
+		}
+		return palette;
+	}
+
+	/**
+	 * @return the alpha of every palette entry, so that only the canvas colors are opaque
+	 */
+	@Nonnull
+	private static byte[] pngTransparency() {
+		var alpha = new byte[256];
+		for (var color : Color.values())
+			alpha[color.getIndex()] = (byte) 0xff;
+		return alpha;
+	}
+
+}
@@ -0,0 +1,62 @@
+package placed;
+
+import javax.annotation.*;
+
+import placed.EventLog.Category;
+
+/**
+ * Dense kernels that compare a whole target canvas with a whole frame canvas, pixel by pixel. The {@link Target}
+ * normally walks only its packed painted pixels, which is faster for sparse targets; for dense ones, a straight pass
+ * over both arrays can be vectorized. The kernels are picked at startup with {@code -Dplaced.kernels}:
+ * <ul>
+ * <li>{@code sparse}, the default, keeps the packed loops in {@link Target}
+ * <li>{@code scalar} uses {@link ScalarKernels}
+ * <li>{@code vector} uses {@code VectorKernels}, which needs {@code --add-modules jdk.incubator.vector}, and falls
+ * back to {@link ScalarKernels} without it
+ * </ul>
+ */
+interface PixelKernels {
+
+	/**
+	 * Sets a bit in {@code words}, which is laid out like {@link java.util.BitSet#toLongArray()} and must be zeroed,
+	 * for every pixel that's painted in {@code target} but has a different color in {@code canvas}.
+	 *
+	 * @return the number of bits set
+	 */
+	int findMismatches(@Nonnull byte[] target, @Nonnull byte[] canvas, @Nonnull long[] words);
+
+	/**
+	 * @return the kernels chosen with {@code -Dplaced.kernels}, or {@code null} to use the sparse loops
+	 */
+	@Nullable
+	static PixelKernels select(@Nonnull EventLog log) {
+		var name = System.getProperty("placed.kernels", "sparse");
+		return switch (name) {
+			case "sparse" -> null;
+			case "scalar" -> new ScalarKernels();
+			case "vector" -> loadVectorKernels(log);
+			default -> {
+				log.warn(Category.KERNELS, "Unknown kernels %s, using the sparse loops", name);
+				yield null;
+			}
+		};
+	}
+
+	@Nonnull
+	private static PixelKernels loadVectorKernels(@Nonnull EventLog log) {
+		if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+			log.warn(Category.KERNELS, "The Vector API isn't available, run with --add-modules jdk.incubator.vector. "
+				+ "Falling back to the scalar kernels");
+			return new ScalarKernels();
+		}
+		try {
+			// Loaded reflectively, the class can't even be linked without the incubator module
+			return (PixelKernels) Class.forName("placed.VectorKernels").getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException | LinkageError e) {
+			log.warn(Category.KERNELS, "Couldn't load the vector kernels (%s), falling back to the scalar kernels",
+					 e.toString());
+			return new ScalarKernels();
+		}
+	}
+
+}
@@ -0,0 +1,179 @@
+package placed;
+
+import static placed.Canvas.NONE;
+
+import java.awt.image.BufferedImage;
+import java.io.*;
+
+import javax.annotation.*;
+
+/**
+ * Per-pixel churn statistics of a canvas, fed with every pixel a diff frame changes. For each pixel it keeps:
+ * <ul>
+ * <li>a change rate that decays with a fixed half-life, so old activity fades out instead of piling up
+ * <li>when it last changed
+ * <li>for target pixels, a moving average of how long they stayed correct before someone painted over them
+ * </ul>
+ * That's three arrays the size of the canvas, allocated once, so memory doesn't grow however long the bot runs.
+ * Decay is applied lazily when a pixel changes or is read, which keeps an update to a handful of arithmetic ops.
+ * <p>
+ * The stats are written by the {@link FramePipeline} worker. Exports read them without locking, so a pixel that
+ * changes during an export may show its old or new values, which doesn't matter for a heatmap.
+ */
+final class PixelStats {
+
+	// Weight of the newest correct streak in the moving average
+	private static final float HOLD_SMOOTHING = 0.25f;
+
+	private final int width;
+	private final int height;
+	// Frame timestamps are stored in seconds since this one, which fits an int for decades
+	private final long origin;
+	private final double decayPerSecond;
+	@Nonnull
+	private final float[] churn;
+	@Nonnull
+	private final int[] lastChange;
+	@Nonnull
+	private final float[] hold;
+
+	/**
+	 * @param origin
+	 *            the frame timestamp the stats start at, in milliseconds
+	 * @param halfLife
+	 *            how long it takes for a change to count half as much, in seconds
+	 */
+	PixelStats(int width, int height, long origin, double halfLife) {
+		this.width = width;
+		this.height = height;
+		this.origin = origin;
+		this.decayPerSecond = Math.log(2) / halfLife;
+		this.churn = new float[width * height];
+		this.lastChange = new int[width * height];
+		this.hold = new float[width * height];
+	}
+
+	int getWidth() {
+		return this.width;
+	}
+
+	int getHeight() {
+		return this.height;
+	}
+
+	/**
+	 * Records a change of the pixel at {@code position}.
+	 *
+	 * @param wasCorrect
+	 *            whether the pixel matched the target before the change
+	 * @param timestamp
+	 *            the frame timestamp of the change, in milliseconds
+	 */
+	void changed(int position, boolean wasCorrect, long timestamp) {
+		int now = seconds(timestamp);
+		int last = this.lastChange[position];
+		this.churn[position] = (float) (this.churn[position] * decay(now - last)) + 1;
+		if (wasCorrect) {
+			// The pixel was correct since its last change (or since we started watching it)
+			float streak = now - last;
+			float mean = this.hold[position];
+			this.hold[position] = mean == 0 ? streak : mean + HOLD_SMOOTHING * (streak - mean);
+		}
+		this.lastChange[position] = now;
+	}
+
+	/**
+	 * @return the decayed number of changes of the pixel at {@code position}, as of {@code timestamp}
+	 */
+	float churnAt(int position, long timestamp) {
+		return (float) (this.churn[position] * decay(seconds(timestamp) - this.lastChange[position]));
+	}
+
+	/**
+	 * @return the frame timestamp of the last change of the pixel at {@code position}, or 0 if it didn't change since
+	 *         the stats started
+	 */
+	long lastChangedAt(int position) {
+		int last = this.lastChange[position];
+		return last == 0 && this.churn[position] == 0 ? 0 : this.origin + last * 1000L;
+	}
+
+	/**
+	 * @return the average number of seconds the pixel at {@code position} stayed correct before it was overwritten,
+	 *         or 0 if that never happened
+	 */
+	float averageHold(int position) {
+		return this.hold[position];
+	}
+
+	/**
+	 * Renders the churn as a heatmap: black for pixels that never change, through red and yellow, to white for the
+	 * most contested ones. The scale is logarithmic, so a few hotspots don't wash out everything else.
+	 */
+	@Nonnull
+	BufferedImage heatmap(long timestamp) {
+		var values = new float[this.churn.length];
+		float max = 0;
+		for (int i = 0; i < values.length; i++) {
+			values[i] = (float) Math.log1p(churnAt(i, timestamp));
+			max = Math.max(max, values[i]);
+		}
+
+		var image = new BufferedImage(this.width, this.height, BufferedImage.TYPE_INT_RGB);
+		var row = new int[this.width];
+		for (int y = 0; y < this.height; y++) {
+			for (int x = 0; x < this.width; x++)
+				row[x] = heat(max == 0 ? 0 : values[y * this.width + x] / max);
+			image.setRGB(0, y, this.width, 1, row, 0, this.width);
+		}
+		return image;
+	}
+
+	/**
+	 * Writes a CSV row for every pixel that has changed or is part of the target of {@code current}, with its
+	 * coordinates offset by {@code dx} and {@code dy}. The header is written separately with
+	 * {@link #writeCsvHeader(Writer)}.
+	 */
+	void writeCsv(@Nonnull Writer out, int canvas, int dx, int dy, @Nonnull CanvasSnapshot current, long timestamp)
+		throws IOException {
+		var target = current.getTarget();
+		for (int i = 0; i < this.churn.length; i++) {
+			byte want = target.getAt(i);
+			if (this.churn[i] == 0 && want == NONE)
+				continue;
+			var line = new StringBuilder(64);
+			line.append(canvas).append(',');
+			line.append(dx + i % this.width).append(',').append(dy + i / this.width).append(',');
+			line.append(churnAt(i, timestamp)).append(',');
+			line.append(lastChangedAt(i)).append(',');
+			if (want != NONE)
+				line.append(want == current.getAt(i) ? "correct" : "contested");
+			line.append(',').append(averageHold(i)).append('\n');
+			out.append(line);
+		}
+	}
+
+	static void writeCsvHeader(@Nonnull Writer out) throws IOException {
+		out.append("canvas,x,y,churn,last_change,target,average_hold_seconds\n");
+	}
+
+	private double decay(int seconds) {
+		return seconds <= 0 ? 1 : Math.exp(-this.decayPerSecond * seconds);
+	}
+
+	private int seconds(long timestamp) {
+		return (int) Math.max(0, (timestamp - this.origin) / 1000);
+	}
+
+	/**
+	 * Maps {@code value}, between 0 and 1, onto black, red, yellow and white.
+	 */
+	private static int heat(float value) {
+		int level = (int) (value * 765);
+		int r = Math.min(255, level);
+		int g = Math.min(255, Math.max(0, level - 255));
+		int b = Math.min(255, Math.max(0, level - 510));
+		return r << 16 | g << 8 | b;
+	}
+
+}
@@ -0,0 +1,1059 @@
+ // made by marko zajc, licensed as CC0
+package placed;
+
+import static java.lang.Long.MAX_VALUE;
+import static java.lang.String.format;
+import static java.lang.System.*;
+import static java.lang.Thread.*;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.shuffle;
+import static java.util.concurrent.Executors.*;
+import static java.util.concurrent.TimeUnit.*;
+import static java.util.function.Predicate.not;
+import static org.apache.commons.lang3.time.DurationFormatUtils.formatDurationWords;
+
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.net.*;
+import java.net.http.*;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.ToLongFunction;
+
+import javax.annotation.*;
+import javax.imageio.ImageIO;
+
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+
+import kong.unirest.Unirest;
+
+import placed.EventLog.Category;
+
+public class Placed {
+
+	// Pass -Dplaced.targets=<directory> to load the targets from somewhere else. Changes to them are picked up live
+	private static final String TARGETS_PATH = getProperty("placed.targets", "/home/marko/projects/rplace/targets/");
+	// Pass -Dplaced.users=<file> to read the accounts, one username|password per line, from somewhere else
+	private static final String USERS_PATH = getProperty("placed.users", "/home/marko/projects/rplace/users.txt");
+	// Pass -Dplaced.snapshots=<directory> to keep the canvas snapshot files somewhere else
+	private static final String SNAPSHOTS_PATH =
+		getProperty("placed.snapshots", "/home/marko/projects/rplace/snapshots/");
+	// Pass -Dplaced.recording=<file> to record the frame stream for FrameReplay
+	private static final String RECORDING_PATH = getProperty("placed.recording");
+	private static final int RECORDING_KEYFRAME_INTERVAL = 600;
+	// Pass -Dplaced.metrics.port=<port> to serve Prometheus metrics on localhost
+	private static final Integer METRICS_PORT = Integer.getInteger("placed.metrics.port");
+	// Pass -Dplaced.tiles.port=<port> to serve the live canvases as PNG tiles on localhost
+	private static final Integer TILES_PORT = Integer.getInteger("placed.tiles.port");
+
+	private static final int UPDATE_INTERVAL = 8;
+	private static final int REPORT_INTERVAL = 20;
+
+	private static final String USER_AGENT =
+		"Mozilla/5.0 (X11; Linux x86_64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/98.0.4758.102 Safari/537.36";
+
+	private static final int FRAME_QUEUE_CAPACITY = 64;
+
+	private static final EventLog LOG = new EventLog(out, 8192);
+	private static final ScheduledExecutorService MAIN = newSingleThreadScheduledExecutor();
+	private static final ScheduledExecutorService SIDE = newSingleThreadScheduledExecutor();
+	private static final ScheduledExecutorService LESS = newSingleThreadScheduledExecutor();
+	private static final ExecutorService UPDATES = Threads.perTask("update", 100);
+	private static final ExecutorService MESSAGES = newSingleThreadExecutor();
+	// The canvases we have targets for, by index. More are added when the server's configuration announces them
+	private static final Map<Integer, Tile> TILES = new ConcurrentSkipListMap<>();
+	private static volatile CanvasLayout layout = CanvasLayout.DEFAULT;
+	@Nullable
+	private static FrameRecorder recorder;
+	private static final HttpClient HTTP_CLIENT = HttpClient.newHttpClient();
+	private static final TargetLoader TARGETS =
+		new TargetLoader(Paths.get(TARGETS_PATH), ForkJoinPool.commonPool(), PixelKernels.select(LOG), LOG);
+	private static final FrameFetcher FETCHER = new FrameFetcher(HTTP_CLIENT, Threads.perTask("fetch", 6), 12, 3);
+	private static final Metrics METRICS = new Metrics();
+	private static final Metrics.Histogram APPLY_LATENCY =
+		METRICS.histogram("placed_diff_apply_seconds", "Time to fetch, decode and apply a batch of diff frames",
+						  Metrics.LATENCY_BUCKETS);
+	private static final Metrics.Histogram STAGE_LATENCY =
+		METRICS.histogram("placed_frame_stage_seconds", "Time spent fetching, decoding and applying frames, by step",
+						  Metrics.LATENCY_BUCKETS);
+	private static final Metrics.Histogram GQL_LATENCY =
+		METRICS.histogram("placed_gql_request_seconds", "GQL request latency", Metrics.LATENCY_BUCKETS);
+	private static final Metrics.Counter GQL_RESPONSES =
+		METRICS.counter("placed_gql_responses_total", "GQL responses by status code, or error if there was none");
+	private static final Metrics.Counter FRAME_ERRORS =
+		METRICS.counter("placed_frame_errors_total", "Frames that couldn't be fetched or applied");
+
+	public static void main(String[] argv) throws Exception {
+		// Without this, the JDK's HTTP server holds small responses back until the client's delayed ACK, which adds
+		// 40ms to every tile and scrape
+		if (getProperty("sun.net.httpserver.nodelay") == null)
+			setProperty("sun.net.httpserver.nodelay", "true");
+		LOG.info(Category.MAIN, "Running frames and updates on %s threads",
+				 Threads.isVirtual() ? "virtual" : "platform");
+		startRecording();
+		addTiles(layout);
+		try {
+			TARGETS.watch(Placed::reloadTarget);
+		} catch (IOException e) {
+			LOG.warn(Category.MAIN, "Can't watch %s for target changes: %s", TARGETS_PATH, e.getMessage());
+		}
+		var accounts = createAccounts();
+		startMetrics(accounts);
+		startTileServer();
+		regenerateWebSockets(accounts);
+
+		// We check for changes every N seconds and correct them accordingly
+		MAIN.scheduleWithFixedDelay(() -> updateAll(accounts), UPDATE_INTERVAL, UPDATE_INTERVAL, SECONDS);
+
+		// We need to regenerate our tokens every so often (not sure how often so I'm setting
+		// this to 20 minutes
+		SIDE.scheduleWithFixedDelay(() -> regenerateTokens(accounts), 20, 20, MINUTES);
+
+		// Missed deltas are caught by the frame timestamps and resync just that canvas, so we only need
+		// to bring back WebSockets that actually died
+		SIDE.scheduleWithFixedDelay(() -> reconnectWebSockets(accounts), 1, 1, MINUTES);
+
+		// Less important things
+		LESS.scheduleWithFixedDelay(() -> report(accounts), REPORT_INTERVAL, REPORT_INTERVAL, SECONDS);
+
+		while (true)
+			sleep(MAX_VALUE);
+	}
+
+	@Nonnull
+	private static List<Account> createAccounts() throws IOException {
+		LOG.info(Category.ACCOUNTS, "Parsing credentials");
+		var credentials = Files.lines(Paths.get(USERS_PATH))
+			.filter(not(String::isEmpty))
+			.map(a -> a.split("\\|"))
+			.toArray(i -> new String[i][]);
+		LOG.info(Category.ACCOUNTS, "Logging into accounts");
+		@SuppressWarnings("null")
+		var accounts = new ArrayList<>(Arrays.stream(credentials)
+			.parallel()
+			.map(c -> new Account(c[0], c[1]))
+			.filter(Objects::nonNull)
+			.toList());
+		LOG.info(Category.ACCOUNTS, "Done! Logged into %d accounts", accounts.size());
+		shuffle(accounts);
+		return accounts;
+	}
+
+	private static void startMetrics(@Nonnull List<Account> accounts) throws IOException {
+		METRICS.gauge("placed_pixels", "Target pixels by whether the canvas matches them", () -> {
+			var values = new LinkedHashMap<String, Integer>();
+			for (var tile : TILES.values()) {
+				var snapshot = tile.getPipeline().getSnapshot();
+				if (snapshot != null) {
+					int contested = snapshot.getMismatchCount();
+					values.put(Metrics.labels("canvas", tile.getIndex(), "state", "good"),
+							   snapshot.getTarget().size() - contested);
+					values.put(Metrics.labels("canvas", tile.getIndex(), "state", "contested"), contested);
+				}
+			}
+			return values;
+		});
+		METRICS.gauge("placed_frame_lag_milliseconds", "How far the applied canvas is behind the newest frame",
+					  () -> perTile(t -> t.getPipeline().getLag()));
+		METRICS.gauge("placed_frame_queue_depth", "Frames waiting to be applied",
+					  () -> perTile(t -> t.getPipeline().getQueueDepth()));
+		METRICS.gauge("placed_accounts", "Accounts by state", () -> {
+			int usable = 0;
+			int disabled = 0;
+			for (var account : List.copyOf(accounts)) {
+				if (account.isDisabled())
+					disabled++;
+				else if (account.canUse())
+					usable++;
+			}
+			return Map.of(Metrics.labels("state", "usable"), usable, Metrics.labels("state", "disabled"), disabled,
+						  Metrics.labels("state", "total"), accounts.size());
+		});
+
+		if (METRICS_PORT != null) {
+			var server = METRICS.serve(new InetSocketAddress(InetAddress.getLoopbackAddress(), METRICS_PORT));
+			server.createContext("/heatmap.png", Placed::exportHeatmap);
+			server.createContext("/churn.csv", Placed::exportChurn);
+			LOG.info(Category.METRICS, "Serving metrics on http://localhost:%d/metrics, and churn stats on "
+				+ "/heatmap.png and /churn.csv", METRICS_PORT);
+		}
+	}
+
+	/**
+	 * Serves a heatmap of how often each pixel changes, with the canvases laid out in global coordinates.
+	 */
+	private static void exportHeatmap(@Nonnull HttpExchange exchange) throws IOException {
+		var current = layout;
+		var image = new BufferedImage(Math.max(1, current.getWidth()), Math.max(1, current.getHeight()),
+									  BufferedImage.TYPE_INT_RGB);
+		var graphics = image.createGraphics();
+		for (var tile : TILES.values()) {
+			var stats = tile.getPipeline().getStats();
+			var placement = current.getPlacement(tile.getIndex());
+			if (stats != null && placement != null)
+				graphics.drawImage(stats.heatmap(tile.getPipeline().getAppliedTimestamp()), placement.dx(),
+								   placement.dy(), null);
+		}
+		graphics.dispose();
+
+		exchange.getResponseHeaders().add("Content-Type", "image/png");
+		exchange.sendResponseHeaders(200, 0);
+		try (var body = exchange.getResponseBody()) {
+			ImageIO.write(image, "png", body);
+		}
+	}
+
+	/**
+	 * Serves the churn statistics of every changed or targeted pixel as CSV, in global coordinates.
+	 */
+	private static void exportChurn(@Nonnull HttpExchange exchange) throws IOException {
+		var current = layout;
+		exchange.getResponseHeaders().add("Content-Type", "text/csv; charset=utf-8");
+		exchange.sendResponseHeaders(200, 0);
+		try (var body = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), UTF_8), 1 << 16)) {
+			PixelStats.writeCsvHeader(body);
+			for (var tile : TILES.values()) {
+				var pipeline = tile.getPipeline();
+				var stats = pipeline.getStats();
+				var snapshot = pipeline.getSnapshot();
+				var placement = current.getPlacement(tile.getIndex());
+				if (stats == null || snapshot == null || placement == null)
+					continue;
+				stats.writeCsv(body, tile.getIndex(), placement.dx(), placement.dy(), snapshot,
+							   pipeline.getAppliedTimestamp());
+			}
+		}
+	}
+
+	private static void startTileServer() throws IOException {
+		if (TILES_PORT == null)
+			return;
+		var requests = METRICS.counter("placed_tile_requests_total",
+									   "Tile requests by layer and whether the tile was encoded, cached or not modified");
+		var server = new TileServer(TILES::get, () -> layout, requests);
+		server.serve(new InetSocketAddress(InetAddress.getLoopbackAddress(), TILES_PORT), Threads.perTask("tiles", 4));
+		LOG.info(Category.METRICS, "Serving canvas tiles on http://localhost:%d/tiles/index.json", TILES_PORT);
+	}
+
+	@Nonnull
+	private static Map<String, Number> perTile(@Nonnull ToLongFunction<Tile> value) {
+		var values = new LinkedHashMap<String, Number>();
+		for (var tile : TILES.values())
+			values.put(Metrics.labels("canvas", tile.getIndex()), value.applyAsLong(tile));
+		return values;
+	}
+
+	private static void startRecording() throws IOException {
+		if (RECORDING_PATH == null)
+			return;
+		LOG.info(Category.RECORDER, "Recording frames to %s", RECORDING_PATH);
+		var frameRecorder = recorder = FrameRecorder.open(Paths.get(RECORDING_PATH), RECORDING_KEYFRAME_INTERVAL, LOG);
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			try {
+				frameRecorder.close();
+			} catch (IOException e) {
+				LOG.error(Category.RECORDER, "Couldn't close %s", RECORDING_PATH, e);
+			}
+		}, "recorder-close"));
+	}
+
+	/**
+	 * Starts tracking every canvas in the layout that has a target and isn't tracked yet. Canvases without a target
+	 * get no storage at all.
+	 */
+	private static synchronized void addTiles(@Nonnull CanvasLayout layout) throws IOException {
+		for (var placement : layout.getPlacements()) {
+			int i = placement.index();
+			if (TILES.containsKey(i))
+				continue;
+			var target = TARGETS.load(i);
+			if (target == null || !fits(target, i, layout))
+				continue;
+
+			LOG.info(Category.MAIN, "Tracking canvas %d at (%d, %d)", i, placement.dx(), placement.dy());
+			var tile = new Tile(i, target, FRAME_QUEUE_CAPACITY, Placed::onFrameError);
+			restoreCanvas(tile, layout);
+			if (recorder != null)
+				tile.getPipeline().recordTo(recorder);
+			tile.getPipeline().measureWith(APPLY_LATENCY, STAGE_LATENCY);
+			TILES.put(i, tile);
+		}
+	}
+
+	/**
+	 * Swaps in the target for a canvas after its file changed. The canvas is re-checked against it on the pipeline's
+	 * worker, so updates keep running on the old target until then.
+	 */
+	private static void reloadTarget(int index) {
+		try {
+			var tile = TILES.get(index);
+			if (tile == null) {
+				// A new target for a canvas we weren't tracking yet
+				addTiles(layout);
+				return;
+			}
+
+			var target = TARGETS.load(index);
+			if (target == null || target == tile.getTarget() || !fits(target, index, layout))
+				return;
+			tile.setTarget(target);
+			LOG.info(Category.MAIN, "Reloaded the target for canvas %d, it has %d pixels", index, target.size());
+
+		} catch (IOException e) {
+			LOG.error(Category.MAIN, "Couldn't reload the target for canvas %d: %s", index, e.getMessage());
+		}
+	}
+
+	private static boolean fits(@Nonnull Target target, int index, @Nonnull CanvasLayout layout) {
+		if (target.getWidth() == layout.getTileWidth() && target.getHeight() == layout.getTileHeight())
+			return true;
+		LOG.error(Category.MAIN, "The target for canvas %d is %dx%d, but the canvas is %dx%d", index,
+				  target.getWidth(), target.getHeight(), layout.getTileWidth(), layout.getTileHeight());
+		return false;
+	}
+
+	private static void restoreCanvas(@Nonnull Tile tile, @Nonnull CanvasLayout layout) throws IOException {
+		int i = tile.getIndex();
+		var directory = Files.createDirectories(Paths.get(SNAPSHOTS_PATH));
+		var file = SnapshotFile.open(directory.resolve(i + ".bin"), layout.getTileWidth(), layout.getTileHeight());
+		var canvas = file.read();
+		long timestamp = file.getTimestamp();
+		if (canvas != null) {
+			// A diff that follows the snapshot can be applied right away, otherwise the full frame we get when
+			// subscribing replaces it
+			tile.getFrameTimestamp().set(timestamp);
+			LOG.info(Category.MAIN, "Restored canvas %d as of %d", i, timestamp);
+		}
+		tile.getPipeline().restore(canvas, timestamp, file);
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			try {
+				tile.getPipeline().close();
+			} catch (IOException e) {
+				LOG.error(Category.MAIN, "Couldn't close the snapshot file of canvas %d", i, e);
+			}
+		}, "snapshot-close-" + i));
+	}
+
+	/**
+	 * Takes in a configuration from the server. New canvases with targets are tracked right away, and get their
+	 * WebSocket on the next reconnect pass. A new tile size is only taken while no canvas is tracked yet.
+	 */
+	private static synchronized void onConfiguration(@Nonnull CanvasLayout configuration) {
+		CanvasLayout merged;
+		if (layout.hasTileSize(configuration.getTileWidth(), configuration.getTileHeight())) {
+			merged = layout.merge(configuration);
+		} else if (TILES.isEmpty()) {
+			// Nothing was sized for the old tiles yet
+			merged = configuration;
+		} else {
+			// The tracked canvases, their targets and snapshot files all have the old size, every full frame would
+			// fail to apply
+			LOG.error(Category.MAIN, "The server changed the tiles from %dx%d to %dx%d, keeping the old layout until "
+				+ "a restart", layout.getTileWidth(), layout.getTileHeight(), configuration.getTileWidth(),
+					  configuration.getTileHeight());
+			return;
+		}
+		if (merged.equals(layout))
+			return;
+		layout = merged;
+		LOG.info(Category.MAIN, "The canvas layout is now %s", merged);
+		try {
+			addTiles(merged);
+		} catch (IOException e) {
+			LOG.error(Category.MAIN, "Couldn't add new canvases: %s", e.getMessage());
+		}
+	}
+
+	private static void regenerateTokens(@Nonnull List<Account> accounts) {
+		LOG.info(Category.ACCOUNTS, "Regenerating account tokens");
+		accounts.parallelStream().forEach(Account::regenerateToken);
+		shuffle(accounts);
+	}
+
+	private static void regenerateWebSockets(@Nonnull List<Account> accounts) {
+		LOG.info(Category.WEBSOCK, "Regenerating the WebSockets");
+		var candidates = accounts.stream().filter(not(Account::isDisabled)).iterator();
+		for (var tile : TILES.values()) {
+			if (!candidates.hasNext())
+				break;
+			try {
+				var ws = tile.getSocket();
+				if (ws != null)
+					ws.sendClose(1000, "quit");
+				tile.setSocket(openWebSocket(candidates.next(), tile));
+			} catch (InterruptedException | ExecutionException | URISyntaxException e) { // NOSONAR no
+				LOG.error(Category.WEBSOCK, "Couldn't regenerate WebSocket %d", tile.getIndex());
+				tile.setSocket(null);
+			}
+		}
+	}
+
+	private static void reconnectWebSockets(@Nonnull List<Account> accounts) {
+		var candidates = accounts.stream().filter(not(Account::isDisabled)).iterator();
+		for (var tile : TILES.values()) {
+			if (!candidates.hasNext())
+				break;
+			if (tile.isConnected())
+				continue;
+			LOG.info(Category.WEBSOCK, "(C%d) Reconnecting the WebSocket", tile.getIndex());
+			try {
+				tile.getFrameTimestamp().set(0);
+				tile.setSocket(openWebSocket(candidates.next(), tile));
+			} catch (InterruptedException e) {
+				currentThread().interrupt();
+				return;
+			} catch (ExecutionException | URISyntaxException e) {
+				LOG.error(Category.WEBSOCK, "Couldn't reconnect WebSocket %d", tile.getIndex());
+				tile.setSocket(null);
+			}
+		}
+	}
+
+	private static WebSocket openWebSocket(Account account, Tile tile) throws InterruptedException,
+																	  ExecutionException, URISyntaxException {
+		int i = tile.getIndex();
+		return HTTP_CLIENT.newWebSocketBuilder()
+			.header("User-Agent", USER_AGENT)
+			.header("Accept", "*/*")
+			.header("Origin", "https://hot-potato.reddit.com")
+			.buildAsync(new URI(WS_ENDPOINT), new WebSocket.Listener() {
+
+				@Override
+				public void onOpen(WebSocket ws) {
+					ws.sendText(format(AUTH_JSON, account.getToken()), true);
+					ws.request(1);
+					LOG.info(Category.WEBSOCK, "(C%d) Connected to the WebSocket with %s!", i, account.getUsername());
+				}
+
+				// Fragments of a message are collected here until the last one arrives
+				private final StringBuilder fragments = new StringBuilder();
+
+				@Override
+				public CompletionStage<?> onText(WebSocket ws, CharSequence text, boolean last) {
+					if (!last) {
+						this.fragments.append(text);
+					} else {
+						String message;
+						if (this.fragments.length() == 0) {
+							message = text.toString();
+						} else {
+							message = this.fragments.append(text).toString();
+							this.fragments.setLength(0);
+						}
+						// Messages are handled in order, but off the listener thread
+						MESSAGES.execute(() -> onMessage(ws, tile, message));
+					}
+					ws.request(1);
+					return null;
+				}
+
+				@Override
+				public void onError(WebSocket webSocket, Throwable error) {
+					LOG.error(Category.WEBSOCK, "(C%d) WebSocket error", i, error);
+				}
+
+			})
+			.get();
+	}
+
+	private static void onMessage(@Nonnull WebSocket ws, @Nonnull Tile tile, @Nonnull String text) {
+		SocketMessage message;
+		try {
+			message = SocketMessage.parse(text);
+		} catch (IOException e) {
+			LOG.warn(Category.WEBSOCK, "Got a malformed payload: %s", text);
+			return;
+		}
+
+		var type = message.getType();
+		switch (type == null ? "" : type) {
+			case "connection_ack" -> {
+				int i = tile.getIndex();
+				ws.sendText(format(START_JSON, i, i), true).thenCompose(w -> w.sendText(CONFIG_JSON, true));
+			}
+			case "data" -> onData(ws, message, text);
+			case "error" -> LOG.warn(Category.WEBSOCK, "Subscription %s failed: %s", message.getId(), text);
+			case "ka" -> { /* i have no clue what this does but it doesn't seem important */ }
+			case "connection_error" -> {
+				LOG.error(Category.WEBSOCK, "Couldn't connect to the websocket, please get a new token");
+				exit(1);
+			}
+			default -> LOG.warn(Category.WEBSOCK, "Got an unknown payload: %s", text);
+		}
+	}
+
+	@SuppressWarnings("null")
+	private static void onData(@Nonnull WebSocket ws, @Nonnull SocketMessage message, @Nonnull String text) {
+		var id = message.getId();
+		if (CONFIG_ID.equals(id)) {
+			var configuration = message.getLayout();
+			if (configuration == null)
+				LOG.warn(Category.WEBSOCK, "Got an unknown configuration payload: %s", text);
+			else
+				onConfiguration(configuration);
+			return;
+		}
+
+		var url = message.getName();
+		var typename = message.getTypename();
+		var tile = id == null ? null : getTile(id);
+		if (url == null || typename == null || tile == null) {
+			LOG.warn(Category.WEBSOCK, "Got an unknown payload: %s", text);
+			return;
+		}
+
+		var pipeline = tile.getPipeline();
+		switch (typename) {
+			case "FullFrameMessageData" -> {
+				long timestamp = message.getTimestamp();
+				tile.getFrameTimestamp().set(timestamp);
+				pipeline.submitFull(timestamp, FETCHER.fetch(url, PngDecoder::decode));
+			}
+			case "DiffFrameMessageData" -> {
+				long previous = message.getPreviousTimestamp();
+				long current = message.getCurrentTimestamp();
+				// Diffs are downloaded right away, but only decoded into the canvas on their turn
+				if (checkFrameSequence(ws, tile, previous, current)
+					&& !pipeline.submitDiff(current, () -> FETCHER.fetch(url, InputStream::readAllBytes))) {
+					LOG.warn(Category.WEBSOCK, "(C%d) Too many frames queued, resyncing", tile.getIndex());
+					resync(ws, tile);
+				}
+			}
+			default -> LOG.warn(Category.WEBSOCK, "Got an unknown frame: %s", text);
+		}
+	}
+
+	/**
+	 * @return the tile a canvas subscription id belongs to, or {@code null} if it isn't one of ours
+	 */
+	@Nullable
+	private static Tile getTile(@Nonnull String id) {
+		try {
+			return TILES.get(Integer.parseInt(id));
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Checks that a diff frame follows directly after the last frame we applied. Stale frames are dropped, and if
+	 * any frames were missed the canvas is resubscribed to, which makes the server send a fresh full frame.
+	 *
+	 * @return whether the diff frame should be applied
+	 */
+	private static boolean checkFrameSequence(@Nonnull WebSocket ws, @Nonnull Tile tile, long previous,
+											  long current) {
+		int id = tile.getIndex();
+		long last = tile.getFrameTimestamp().get();
+		if (last == 0) {
+			// Still waiting for a full frame, there's nothing to apply this to
+			return false;
+
+		} else if (current <= last) {
+			LOG.warn(Category.WEBSOCK, "(C%d) Dropping an out-of-order diff frame (%d <= %d)", id, current, last);
+			return false;
+
+		} else if (previous != last) {
+			LOG.warn(Category.WEBSOCK, "(C%d) Missed diff frames between %d and %d, resyncing", id, last, previous);
+			resync(ws, tile);
+			return false;
+
+		} else {
+			// A frame that failed in the meantime makes this fail, and the next diff will resync
+			return tile.getFrameTimestamp().compareAndSet(last, current);
+		}
+	}
+
+	/**
+	 * Resubscribes to a canvas, which makes the server send a fresh full frame.
+	 */
+	private static void resync(@Nonnull WebSocket ws, @Nonnull Tile tile) {
+		int id = tile.getIndex();
+		tile.getFrameTimestamp().set(0);
+		ws.sendText(format(STOP_JSON, id), true).thenCompose(w -> w.sendText(format(START_JSON, id, id), true));
+	}
+
+	/**
+	 * Marks a canvas for a resync if one of its frames couldn't be fetched or applied. The resync itself happens
+	 * when the next diff frame arrives and doesn't line up with the last timestamp anymore.
+	 */
+	private static void onFrameError(int id, @Nonnull Throwable error) {
+		var cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+		FRAME_ERRORS.increment(Metrics.labels("canvas", id));
+		var tile = TILES.get(id);
+		if (tile != null && tile.getFrameTimestamp().getAndSet(-1) != -1)
+			LOG.error(Category.WEBSOCK, "(C%d) Couldn't update the canvas: %s", id, cause.getMessage());
+	}
+
+	static void updateAll(@Nonnull List<Account> accounts) {
+		var coordinates = findCoordinates(accounts);
+
+		if (coordinates != null && !coordinates.isEmpty())
+			updateCoordinates(accounts, coordinates);
+	}
+
+	private static void updateCoordinates(@Nonnull List<Account> accounts, @Nonnull Queue<Coordinate> coordinates) {
+		LOG.info(Category.UPDATER, "Updating %d coordinates", coordinates.size());
+		for (int i = 0; i < accounts.size() && !coordinates.isEmpty(); i++) {
+			var account = accounts.get(i);
+			if (account.canUse()) {
+				var coordinate = coordinates.remove();
+				UPDATES.submit(() -> {
+					@SuppressWarnings("null")
+					long timeout = update(account, coordinate);
+					if (timeout == -1) {
+						LOG.warn(Category.ACCOUNTS, "Disabled %s", account.getUsername());
+						account.disable();
+
+					} else if (timeout == -2) {
+						LOG.warn(Category.ACCOUNTS, "%s was banned", account.getUsername());
+						account.disable();
+
+					} else {
+						long delay = timeout + getRatelimitRandomDelta();
+						LOG.info(Category.ACCOUNTS, "Timing %s out for %s", account.getUsername(),
+								 EventLog.lazy(() -> formatDurationWords(delay, true, true)));
+						account.setTimeout(delay);
+					}
+				});
+			}
+		}
+	}
+
+	@Nullable
+	private static Queue<Coordinate> findCoordinates(List<Account> accounts) {
+		int quantity = (int) accounts.stream().filter(Account::canUse).count();
+		if (quantity == 0)
+			return null;
+
+		var coordinates = new ArrayList<Coordinate>(100);
+		var random = ThreadLocalRandom.current();
+		for (var tile : TILES.values()) {
+			var snapshot = tile.getPipeline().getSnapshot();
+			if (!tile.isConnected() || snapshot == null)
+				continue;
+			var target = snapshot.getTarget();
+			for (int position : snapshot.sample(quantity, random)) {
+				coordinates.add(new Coordinate(Color.byIndex(target.getAt(position)), position % target.getWidth(),
+											   position / target.getWidth(), tile.getIndex()));
+			}
+		}
+		shuffle(coordinates);
+		var queue = new ArrayBlockingQueue<Coordinate>(quantity);
+		coordinates.stream().limit(quantity).forEach(queue::add);
+		return queue;
+	}
+
+	@SuppressWarnings("null")
+	private static long update(@Nonnull Account account, @Nonnull Coordinate coordinate) {
+		synchronized (account) { // NOSONAR i know what i'm doing
+			try {
+				var placement = layout.getPlacement(coordinate.canvas());
+				int dx = placement == null ? 0 : placement.dx();
+				int dy = placement == null ? 0 : placement.dy();
+				LOG.info(Category.UPDATER, "(%s) Updating (%d, %d, %d) [%d, %d] to %s", account.getUsername(),
+						 coordinate.x(), coordinate.y(), coordinate.canvas(), coordinate.x() + dx, coordinate.y() + dy,
+						 coordinate.color());
+				var resp =
+					updateRequest(coordinate.x(), coordinate.y(), coordinate.canvas(), coordinate.color(), account);
+				if (resp.statusCode() == 200) {
+					long timeout = getTimeout(resp.body());
+					if (timeout == 2147483647000L)
+						return -2;
+					return timeout - currentTimeMillis();
+				} else {
+					throw new IllegalStateException(format("Bad response code: %d%n%s", resp.statusCode(),
+														   resp.body()));
+				}
+			} catch (InterruptedException e) {
+				currentThread().interrupt();
+			} catch (Exception e) {
+				LOG.error(Category.UPDATER, "(%s) Couldn't update a pixel", account.getUsername(), e);
+			}
+			return -1;
+		}
+	}
+
+	private static long getTimeout(@Nonnull String json) {
+		var root = JsonParser.parseString(json).getAsJsonObject();
+		var data = root.get("data");
+		if (data.isJsonNull()) {
+			var ratelimit = root.getAsJsonArray("errors")
+				.get(0)
+				.getAsJsonObject()
+				.getAsJsonObject("extensions")
+				.get("nextAvailablePixelTs");
+			if (ratelimit.isJsonNull())
+				return MINUTES.toMillis(5);
+			else
+				return ratelimit.getAsLong();
+		} else
+			return data.getAsJsonObject()
+				.getAsJsonObject("act")
+				.getAsJsonArray("data")
+				.get(0)
+				.getAsJsonObject()
+				.getAsJsonObject("data")
+				.get("nextAvailablePixelTimestamp")
+				.getAsLong();
+	}
+
+	@SuppressWarnings("null")
+	private static java.net.http.HttpResponse<String> updateRequest(int x, int y, int canvas, Color target,
+																	@Nonnull Account account) throws URISyntaxException,
+																							  IOException,
+																							  InterruptedException {
+		return gqlRequest(format(UPDATE_JSON, x, y, target.getIndex(), canvas), account.getToken());
+	}
+
+	static void report(@Nonnull List<Account> accounts) {
+		int goodPixels = 0;
+		int contestedPixels = 0;
+		var frames = new StringBuilder();
+		for (var tile : TILES.values()) {
+			var pipeline = tile.getPipeline();
+			frames.append(format(" C%d %02d queued %05dms behind ", tile.getIndex(), pipeline.getQueueDepth(),
+								 pipeline.getLag()));
+			var snapshot = pipeline.getSnapshot();
+			if (snapshot == null)
+				continue;
+			// The mismatch index is kept up to date with every frame, so there's no need to rescan the canvas
+			goodPixels += snapshot.getTarget().size() - snapshot.getMismatchCount();
+			contestedPixels += snapshot.getMismatchCount();
+		}
+		int disabledAccounts = 0;
+		int usableAccounts = 0;
+		for (var account : List.copyOf(accounts)) {
+			if (account.isDisabled())
+				disabledAccounts++;
+			else if (account.canUse())
+				usableAccounts++;
+		}
+		LOG.info(Category.STATUS, "Pixels:   %04d good   %04d contested", goodPixels, contestedPixels);
+		LOG.info(Category.STATUS, "Accounts: %04d usable %04d disabled  %04d total", usableAccounts, disabledAccounts,
+				 accounts.size());
+		LOG.info(Category.STATUS, "Frames:  %s", frames);
+	}
+
+	@Nullable
+	public static String login(@Nonnull String username, @Nonnull String password) {
+		Unirest.config().cookieSpec("standard");
+		var resp = Unirest.post(LOGIN_ENDPOINT + username)
+			.accept("application/json, text/javascript, */*; q=0.01")
+			.contentType("application/x-www-form-urlencoded; charset=UTF-8")
+			.header("Authority", "old.reddit.com")
+			.header("X-Requested-With", "XMLHttpRequest")
+			.header("User-Agent", USER_AGENT)
+			.header("Referer", "https://old.reddit.com/")
+			.header("Accept-Language", "en-US,en;q=0.9")
+			.body(format(LOGIN_BODY, URLEncoder.encode(username, UTF_8), URLEncoder.encode(password, UTF_8)))
+			.asJson();
+		var cookies = resp.getCookies();
+		var root = resp.getBody().getObject().getJSONObject("json");
+		if (!root.has("data"))
+			return null;
+
+		var tokenv2 = Unirest.get(TOKEN_ENDPOINT)
+			.cookie(cookies)
+			.cookie("reddit_session", URLEncoder.encode(root.getJSONObject("data").getString("cookie"), UTF_8))
+			.cookie("edgebucket", "mMmdHtW5Hk0Ir6cSCL")
+			.cookie("pc", "rg")
+			.cookie("csv", "2")
+			.accept("text/html,application/xhtml+xml,application/xml;q=0.9,image/avif,image/webp,image/apng,*/*;q=0.8,application/signed-exchange;v=b3;q=0.9")
+			.header("Authority", "old.reddit.com")
+			.header("User-Agent", USER_AGENT)
+			.header("Referer", "https://old.reddit.com/")
+			.header("Accept-Language", "en-US,en;q=0.9")
+			.asEmpty()
+			.getCookies()
+			.getNamed("token_v2")
+			.getValue();
+		return JsonParser.parseString(new String(Base64.getDecoder().decode(tokenv2.split("\\.")[1]), UTF_8))
+			.getAsJsonObject()
+			.get("sub")
+			.getAsString();
+	}
+
+	private static int getRatelimitRandomDelta() {
+		// return ThreadLocalRandom.current().nextInt(2000, 180000);
+		return 0;
+	}
+
+	public static record Coordinate(@Nonnull Color color, int x, int y, int canvas) {}
+
+	public static class Account {
+
+		@Nonnull
+		private final String username;
+		@Nonnull
+		private final String password;
+		private String token;
+		private long timeout;
+		private boolean disabled;
+
+		public Account(@Nonnull String username, @Nonnull String password) {
+			this.username = username;
+			this.password = password;
+			if (this.regenerateToken()) {
+				try {
+					this.timeout = getRatelimit(getToken()) + getRatelimitRandomDelta();
+				} catch (InterruptedException e) {
+					currentThread().interrupt();
+					disable();
+
+				} catch (Exception e) {
+					LOG.warn(Category.ACCOUNTS, "Could not log into %s, disabling it", username, e);
+					disable();
+				}
+			}
+		}
+
+		@Nonnull
+		@SuppressWarnings("null")
+		public String getToken() {
+			return this.token;
+		}
+
+		public boolean regenerateToken() {
+			String newToken = null;
+			try {
+				newToken = login(this.username, this.password);
+			} catch (Exception e) {
+				LOG.warn(Category.ACCOUNTS, "Couldn't log into %s", this.username, e);
+			}
+			if (newToken == null) {
+				LOG.warn(Category.ACCOUNTS, "Couldn't log into %s", this.username);
+				disable();
+				return false;
+			} else {
+				this.token = newToken;
+				return true;
+			}
+		}
+
+		public boolean canUse() {
+			return this.timeout < currentTimeMillis() && !isDisabled();
+		}
+
+		public boolean isDisabled() {
+			return this.disabled;
+		}
+
+		public void setTimeout(long duration) {
+			this.timeout = duration + currentTimeMillis();
+		}
+
+		public void disable() {
+			this.disabled = true;
+		}
+
+		@Nonnull
+		public String getUsername() {
+			return this.username;
+		}
+
+		private static long getRatelimit(@Nonnull String token) throws URISyntaxException, IOException,
+																InterruptedException {
+			var resp = gqlRequest(RATELIMIT_JSON, token);
+			if (resp.statusCode() != 200)
+				throw new IllegalStateException(format("Bad response code: %d%n%s", resp.statusCode(), resp.body()));
+			var ratelimit = JsonParser.parseString(resp.body())
+				.getAsJsonObject()
+				.getAsJsonObject("data")
+				.getAsJsonObject("act")
+				.getAsJsonArray("data")
+				.get(0)
+				.getAsJsonObject()
+				.getAsJsonObject("data")
+				.get("nextAvailablePixelTimestamp");
+			if (ratelimit.isJsonNull())
+				return System.currentTimeMillis();
+			else
+				return ratelimit.getAsLong();
+		}
+
+	}
+
+	@Nonnull
+	@SuppressWarnings("null")
+	private static java.net.http.HttpResponse<String> gqlRequest(@Nonnull String query,
+																 @Nonnull String token) throws URISyntaxException,
+																						IOException,
+																						InterruptedException {
+		var r = HttpRequest.newBuilder(new URI(GQL_ENDPOINT))
+			.POST(BodyPublishers.ofString(query))
+			.setHeader("User-Agent", USER_AGENT)
+			.setHeader("Accept", "*/*")
+			.setHeader("Accept-Language", "en-US,en;q=0.5")
+			.setHeader("Accept-Encoding", "gzip, deflate, br")
+			.setHeader("Referer", "https://hot-potato.reddit.com/")
+			.setHeader("content-type", "application/json")
+			.setHeader("authorization", "Bearer " + token)
+			.setHeader("apollographql-client-name", "mona-lisa")
+			.setHeader("apollographql-client-version", "0.0.1")
+			.setHeader("Origin", "https://hot-potato.reddit.com")
+			.setHeader("DNT", "1")
+			.setHeader("Pragma", "no-cache")
+			.setHeader("Cache-Control", "no-cache")
+			.setHeader("TE", "trailers");
+		long start = nanoTime();
+		try {
+			var response = HTTP_CLIENT.send(r.build(), BodyHandlers.ofString());
+			GQL_RESPONSES.increment(Metrics.labels("status", response.statusCode()));
+			return response;
+		} catch (IOException e) {
+			GQL_RESPONSES.increment(Metrics.labels("status", "error"));
+			throw e;
+		} finally {
+			GQL_LATENCY.observeNanos("", nanoTime() - start);
+		}
+	}
+
+	///////////////////////////////////////
+	// things we don't really care about //
+	///////////////////////////////////////
+
+	enum Color {
+
+		DARKEST_RED(0xFF6D001A, 0),
+		DARK_RED(0xFFBE0039, 1),
+		RED(0xFFFF4500, 2),
+		ORANGE(0xFFFFA800, 3),
+		YELLOW(0xFFFFD635, 4),
+		PALE_YELLOW(0xFFFFF8B8, 5),
+		DARK_GREEN(0xFF00A368, 6),
+		GREEN(0xFF00CC78, 7),
+		LIGHT_GREEN(0xFF7EED56, 8),
+		DARK_TEAL(0xFF00756F, 9),
+		TEAL(0xFF009EAA, 10),
+		LIGHT_TEAL(0xFF00CC00, 11),
+		DARK_BLUE(0xFF2450A4, 12),
+		BLUE(0xFF3690EA, 13),
+		LIGHT_BLUE(0xFF51E9F4, 14),
+		INDIGO(0xFF493AC1, 15),
+		PERIWINKLE(0xFF6A5CFF, 16),
+		LAVENDER(0xFF94B3FF, 17),
+		DARK_PURPLE(0xFF811E9F, 18),
+		PURPLE(0xFFB44AC0, 19),
+		PALE_PURPLE(0xFFE4ABFF, 20),
+		MAGENTA(0xFFDE107F, 21),
+		PINK(0xFFFF3881, 22),
+		LIGHT_PINK(0xFFFF99AA, 23),
+		DARK_BROWN(0xFF6D482F, 24),
+		BROWN(0xFF9C6926, 25),
+		BEIGE(0xFFFFB470, 26),
+		BLACK(0xFF000000, 27),
+		DARK_GRAY(0xFF515252, 28),
+		GRAY(0xFF898D90, 29),
+		LIGHT_GRAY(0xFFD4D7D9, 30),
+		WHITE(0xFFFFFFFF, 31);
+
+		private final int rgb;
+		private final int index;
+
+		private Color(int color, int index) {
+			this.rgb = color;
+			this.index = index;
+		}
+
+		public int getRgb() {
+			return this.rgb;
+		}
+
+		public int getIndex() {
+			return this.index;
+		}
+
+		// Open-addressed table from RGB to color, so lookups don't have to walk values()
+		private static final int LOOKUP_BITS = 7;
+		private static final int[] LOOKUP_RGB = new int[1 << LOOKUP_BITS];
+		private static final Color[] LOOKUP = new Color[1 << LOOKUP_BITS];
+		private static final Color[] BY_INDEX = new Color[32];
+		static {
+			for (var color : values()) {
+				BY_INDEX[color.index] = color;
+				int slot = slot(color.rgb);
+				while (LOOKUP[slot] != null)
+					slot = (slot + 1) & (LOOKUP.length - 1);
+				LOOKUP[slot] = color;
+				LOOKUP_RGB[slot] = color.rgb;
+			}
+		}
+
+		private static int slot(int rgb) {
+			return (rgb * 0x9E3779B1) >>> (32 - LOOKUP_BITS);
+		}
+
+		@Nullable
+		public static Color getColor(int rgb) {
+			for (int slot = slot(rgb);; slot = (slot + 1) & (LOOKUP.length - 1)) {
+				var color = LOOKUP[slot];
+				if (color == null || LOOKUP_RGB[slot] == rgb)
+					return color;
+			}
+		}
+
+		/**
+		 * @return the palette color closest to {@code rgb}, by squared distance with the channels weighted for how
+		 *         sensitive the eye is to them
+		 */
+		@Nonnull
+		public static Color nearest(int rgb) {
+			var exact = getColor(rgb);
+			if (exact != null)
+				return exact;
+
+			Color nearest = WHITE;
+			int best = Integer.MAX_VALUE;
+			for (var color : BY_INDEX) {
+				if (color == null)
+					continue;
+				int dr = (rgb >> 16 & 0xff) - (color.rgb >> 16 & 0xff);
+				int dg = (rgb >> 8 & 0xff) - (color.rgb >> 8 & 0xff);
+				int db = (rgb & 0xff) - (color.rgb & 0xff);
+				int distance = 2 * dr * dr + 4 * dg * dg + 3 * db * db;
+				if (distance < best) {
+					best = distance;
+					nearest = color;
+				}
+			}
+			return nearest;
+		}
+
+		@Nullable
+		public static Color byIndex(int index) {
+			return index >= 0 && index < BY_INDEX.length ? BY_INDEX[index] : null;
+		}
+
+	}
+
+	// All of the endpoints can be overridden with system properties, for example to point them at a MockServer
+	private static final String LOGIN_ENDPOINT = getProperty("placed.login", "https://old.reddit.com/api/login/");
+	private static final String TOKEN_ENDPOINT = getProperty("placed.token", "https://old.reddit.com/chat/minimize");
+	private static final String LOGIN_BODY = "op=login-main&api_type=json&user=%s&passwd=%s";
+	private static final String GQL_ENDPOINT = getProperty("placed.gql", "https://gql-realtime-2.reddit.com/query");
+	private static final String WS_ENDPOINT = getProperty("placed.ws", "wss://gql-realtime-2.reddit.com/query");
+	private static final String START_JSON =
+		"{\"id\":\"%d\",\"type\":\"start\",\"payload\":{\"variables\":{\"input\":{\"channel\":{\"teamOwner\":\"AFD2022\",\"category\":\"CANVAS\",\"tag\":\"%d\"}}},\"extensions\":{},\"operationName\":\"replace\",\"query\":\"subscription replace($input: SubscribeInput!) {\\n  subscribe(input: $input) {\\n    id\\n    ... on BasicMessage {\\n      data {\\n        __typename\\n        ... on FullFrameMessageData {\\n          __typename\\n          name\\n          timestamp\\n        }\\n        ... on DiffFrameMessageData {\\n          __typename\\n          name\\n          currentTimestamp\\n          previousTimestamp\\n        }\\n      }\\n      __typename\\n    }\\n    __typename\\n  }\\n}\\n\"}}";
+	private static final String STOP_JSON = "{\"id\":\"%d\",\"type\":\"stop\"}";
+	// The subscription id CONFIG_JSON uses, canvas subscriptions use their index
+	private static final String CONFIG_ID = "config";
+	private static final String CONFIG_JSON =
+		"{\"id\":\"config\",\"type\":\"start\",\"payload\":{\"variables\":{\"input\":{\"channel\":{\"teamOwner\":\"AFD2022\",\"category\":\"CONFIG\"}}},\"extensions\":{},\"operationName\":\"configuration\",\"query\":\"subscription configuration($input: SubscribeInput!) {\\n  subscribe(input: $input) {\\n    id\\n    ... on BasicMessage {\\n      data {\\n        __typename\\n        ... on ConfigurationMessageData {\\n          canvasConfigurations {\\n            index\\n            dx\\n            dy\\n          }\\n          canvasWidth\\n          canvasHeight\\n        }\\n      }\\n    }\\n  }\\n}\\n\"}}";
+	private static final String UPDATE_JSON =
+		"{\"operationName\":\"setPixel\",\"variables\":{\"input\":{\"actionName\":\"r/replace:set_pixel\",\"PixelMessageData\":{\"coordinate\":{\"x\":%d,\"y\":%d},\"colorIndex\":%d,\"canvasIndex\":%d}}},\"query\":\"mutation setPixel($input: ActInput!) {\\n  act(input: $input) {\\n    data {\\n      ... on BasicMessage {\\n        id\\n        data {\\n          ... on GetUserCooldownResponseMessageData {\\n            nextAvailablePixelTimestamp\\n            __typename\\n          }\\n          ... on SetPixelResponseMessageData {\\n            timestamp\\n            __typename\\n          }\\n          __typename\\n        }\\n        __typename\\n      }\\n      __typename\\n    }\\n    __typename\\n  }\\n}\\n\"}";
+	private static final String RATELIMIT_JSON =
+		"{\"query\":\"mutation GetPersonalizedTimer{\\n  act(\\n    input: {actionName: \\\"r/replace:get_user_cooldown\\\"}\\n  ) {\\n    data {\\n      ... on BasicMessage {\\n        id\\n        data {\\n          ... on GetUserCooldownResponseMessageData {\\n            nextAvailablePixelTimestamp\\n          }\\n        }\\n      }\\n    }\\n  }\\n}\\n\\n\\nsubscription SUBSCRIBE_TO_CONFIG_UPDATE {\\n  subscribe(input: {channel: {teamOwner: AFD2022, category: CONFIG}}) {\\n    id\\n    ... on BasicMessage {\\n      data {\\n        ... on ConfigurationMessageData {\\n          __typename\\n          colorPalette {\\n            colors {\\n              hex\\n              index\\n            }\\n          }\\n          canvasConfigurations {\\n            dx\\n            dy\\n            index\\n          }\\n          canvasWidth\\n          canvasHeight\\n        }\\n      }\\n    }\\n  }\\n}\\n\\n\\nsubscription SUBSCRIBE_TO_CANVAS_UPDATE {\\n  subscribe(\\n    input: {channel: {teamOwner: AFD2022, category: CANVAS, tag: \\\"0\\\"}}\\n  ) {\\n    id\\n    ... on BasicMessage {\\n      id\\n      data {\\n        __typename\\n        ... on DiffFrameMessageData {\\n          currentTimestamp\\n          previousTimestamp\\n          name\\n        }\\n        ... on FullFrameMessageData {\\n          __typename\\n          name\\n          timestamp\\n        }\\n      }\\n    }\\n  }\\n}\\n\\n\\n\\n\\nmutation SET_PIXEL {\\n  act(\\n    input: {actionName: \\\"r/replace:set_pixel\\\", PixelMessageData: {coordinate: { x: 53, y: 35}, colorIndex: 3, canvasIndex: 0}}\\n  ) {\\n    data {\\n      ... on BasicMessage {\\n        id\\n        data {\\n          ... on SetPixelResponseMessageData {\\n            timestamp\\n          }\\n        }\\n      }\\n    }\\n  }\\n}\\n\\n\\n\\n\\n# subscription configuration($input: SubscribeInput!) {\\n#     subscribe(input: $input) {\\n#       id\\n#       ... on BasicMessage {\\n#         data {\\n#           __typename\\n#           ... on RReplaceConfigurationMessageData {\\n#             colorPalette {\\n#               colors {\\n#                 hex\\n#                 index\\n#               }\\n#             }\\n#             canvasConfigurations {\\n#               index\\n#               dx\\n#               dy\\n#             }\\n#             canvasWidth\\n#             canvasHeight\\n#           }\\n#         }\\n#       }\\n#     }\\n#   }\\n\\n# subscription replace($input: SubscribeInput!) {\\n#   subscribe(input: $input) {\\n#     id\\n#     ... on BasicMessage {\\n#       data {\\n#         __typename\\n#         ... on RReplaceFullFrameMessageData {\\n#           name\\n#           timestamp\\n#         }\\n#         ... on RReplaceDiffFrameMessageData {\\n#           name\\n#           currentTimestamp\\n#           previousTimestamp\\n#         }\\n#       }\\n#     }\\n#   }\\n# }\\n\",\"variables\":{\"input\":{\"channel\":{\"teamOwner\":\"GROWTH\",\"category\":\"R_REPLACE\",\"tag\":\"canvas:0:frames\"}}},\"operationName\":\"GetPersonalizedTimer\",\"id\":null}";
+	private static final String AUTH_JSON = """
+		{
+			"type": "connection_init",
+			"payload": {
+				"Authorization": "Bearer %s"
+			}
+		}""";
+
+}
@@ -0,0 +1,384 @@
+package placed;
+
+import static java.lang.String.format;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.zip.*;
+
+import javax.annotation.*;
+
+import placed.Canvas.ChangeListener;
+import placed.Placed.Color;
+
+/**
+ * A streaming PNG decoder for canvas frames. Scanlines are inflated and unfiltered into a pair of pooled row buffers
+ * and converted to palette indices straight into a {@link Canvas}, so no intermediate image is ever built. Only the
+ * formats the frames actually come in are supported: 8-bit, non-interlaced RGB, RGBA and indexed color.
+ */
+final class PngDecoder {
+
+	private static final byte[] SIGNATURE = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n' };
+	private static final int IHDR = 0x49484452;
+	private static final int PLTE = 0x504c5445;
+	private static final int TRNS = 0x74524e53;
+	private static final int IDAT = 0x49444154;
+	private static final int IEND = 0x49454e44;
+
+	private static final int TYPE_RGB = 2;
+	private static final int TYPE_INDEXED = 3;
+	private static final int TYPE_RGBA = 6;
+
+	private static final int MAX_DIMENSION = 1 << 14;
+
+	// Decoders are run on virtual threads, which come and go with every frame, so states are pooled rather than kept
+	// per thread. The pool holds about as many as decode at once, the inflaters of states that don't fit are released
+	private static final ArrayBlockingQueue<State> STATES = new ArrayBlockingQueue<>(16);
+
+	private PngDecoder() {}
+
+	/**
+	 * Decodes a full frame into a new canvas.
+	 */
+	@Nonnull
+	static Canvas decode(@Nonnull InputStream in) throws IOException {
+		var state = borrow();
+		Canvas canvas;
+		try {
+			decode(in, state, null, null);
+			canvas = state.canvas;
+		} finally {
+			state.canvas = null;
+			release(state);
+		}
+		if (canvas == null)
+			throw new IOException("PNG has no image data");
+		return canvas;
+	}
+
+	/**
+	 * Decodes a diff frame and copies its non-transparent pixels onto {@code canvas}, calling {@code listener} for
+	 * every pixel whose value actually changed.
+	 *
+	 * @return the number of pixels that were copied
+	 */
+	static int decodeInto(@Nonnull InputStream in, @Nonnull Canvas canvas,
+						  @Nullable ChangeListener listener) throws IOException {
+		var state = borrow();
+		try {
+			return decode(in, state, canvas, listener);
+		} finally {
+			release(state);
+		}
+	}
+
+	@Nonnull
+	private static State borrow() {
+		var state = STATES.poll();
+		return state == null ? new State() : state;
+	}
+
+	private static void release(@Nonnull State state) {
+		if (!STATES.offer(state))
+			state.inflater.end();
+	}
+
+	private static int decode(@Nonnull InputStream in, @Nonnull State state, @Nullable Canvas canvas,
+							  @Nullable ChangeListener listener) throws IOException {
+		var buffer = state.buffer;
+		readFully(in, buffer, 0, SIGNATURE.length);
+		if (!Arrays.equals(buffer, 0, SIGNATURE.length, SIGNATURE, 0, SIGNATURE.length))
+			throw new IOException("Not a PNG");
+
+		state.reset();
+		try {
+			while (true) {
+				readFully(in, buffer, 0, 8);
+				int length = readInt(buffer, 0);
+				int type = readInt(buffer, 4);
+				if (length < 0)
+					throw new IOException("Bad PNG chunk length");
+
+				switch (type) {
+					case IHDR -> {
+						readHeader(in, state, length);
+						if (canvas == null) {
+							state.canvas = new Canvas(state.width, state.height);
+						} else if (canvas.getWidth() != state.width || canvas.getHeight() != state.height) {
+							throw new IOException(format("Frame size mismatch: %dx%d and %dx%d", canvas.getWidth(),
+														 canvas.getHeight(), state.width, state.height));
+						}
+					}
+					case PLTE -> readPalette(in, state, length);
+					case TRNS -> readTransparency(in, state, length);
+					case IDAT -> {
+						if (state.width == 0)
+							throw new IOException("PNG image data before the header");
+						var target = canvas == null ? state.canvas : canvas;
+						inflate(in, state, length, target, canvas == null ? null : listener);
+					}
+					case IEND -> {
+						skip(in, length + 4);
+						if (state.row < state.height)
+							throw new IOException(format("PNG ended after %d of %d rows", state.row, state.height));
+						return state.applied;
+					}
+					default -> skip(in, length);
+				}
+				if (type != IEND)
+					skip(in, 4); // CRC, zlib already checksums the image data
+			}
+		} catch (DataFormatException e) {
+			throw new IOException("Corrupt PNG image data", e);
+		}
+	}
+
+	private static void readHeader(@Nonnull InputStream in, @Nonnull State state, int length) throws IOException {
+		if (length != 13)
+			throw new IOException("Bad PNG header length");
+		var buffer = state.buffer;
+		readFully(in, buffer, 0, 13);
+		int width = readInt(buffer, 0);
+		int height = readInt(buffer, 4);
+		int depth = buffer[8];
+		int colorType = buffer[9];
+		int interlace = buffer[12];
+		if (width <= 0 || height <= 0 || width > MAX_DIMENSION || height > MAX_DIMENSION)
+			throw new IOException(format("Unsupported PNG size %dx%d", width, height));
+		if (depth != 8 || interlace != 0)
+			throw new IOException(format("Unsupported PNG bit depth %d or interlace %d", depth, interlace));
+
+		state.bytesPerPixel = switch (colorType) {
+			case TYPE_RGB -> 3;
+			case TYPE_INDEXED -> 1;
+			case TYPE_RGBA -> 4;
+			default -> throw new IOException("Unsupported PNG color type " + colorType);
+		};
+		state.width = width;
+		state.height = height;
+		state.colorType = colorType;
+		state.allocateRows(width * state.bytesPerPixel + 1);
+	}
+
+	private static void readPalette(@Nonnull InputStream in, @Nonnull State state, int length) throws IOException {
+		if (length % 3 != 0 || length > 256 * 3)
+			throw new IOException("Bad PNG palette length");
+		var buffer = state.buffer;
+		readFully(in, buffer, 0, length);
+		for (int i = 0, j = 0; j < length; i++, j += 3) {
+			int rgb = 0xff000000 | (buffer[j] & 0xff) << 16 | (buffer[j + 1] & 0xff) << 8 | buffer[j + 2] & 0xff;
+			var color = Color.getColor(rgb);
+			state.palette[i] = color == null ? Canvas.NONE : (byte) color.getIndex();
+		}
+	}
+
+	private static void readTransparency(@Nonnull InputStream in, @Nonnull State state, int length) throws IOException {
+		if (state.colorType != TYPE_INDEXED) {
+			// Single-color transparency for RGB images, the frames never use it
+			skip(in, length);
+			return;
+		}
+		if (length > 256)
+			throw new IOException("Bad PNG transparency length");
+		var buffer = state.buffer;
+		readFully(in, buffer, 0, length);
+		for (int i = 0; i < length; i++) {
+			if (buffer[i] == 0)
+				state.palette[i] = Canvas.NONE;
+		}
+	}
+
+	private static void inflate(@Nonnull InputStream in, @Nonnull State state, int length, @Nonnull Canvas canvas,
+								@Nullable ChangeListener listener) throws IOException, DataFormatException {
+		var inflater = state.inflater;
+		var buffer = state.buffer;
+		int remaining = length;
+		while (remaining > 0) {
+			int read = in.read(buffer, 0, Math.min(buffer.length, remaining));
+			if (read < 0)
+				throw new EOFException("PNG ended in the middle of image data");
+			remaining -= read;
+			inflater.setInput(buffer, 0, read);
+
+			while (state.row < state.height) {
+				int inflated = inflater.inflate(state.current, state.filled, state.current.length - state.filled);
+				if (inflated == 0) {
+					if (inflater.needsDictionary())
+						throw new DataFormatException("PNG image data needs a preset dictionary");
+					if (inflater.needsInput() || inflater.finished())
+						break;
+				}
+				state.filled += inflated;
+				if (state.filled == state.current.length) {
+					unfilter(state.current, state.previous, state.bytesPerPixel);
+					writeRow(state, canvas, listener);
+					state.nextRow();
+				}
+			}
+		}
+	}
+
+	private static void unfilter(@Nonnull byte[] row, @Nonnull byte[] previous, int bpp) throws DataFormatException {
+		int filter = row[0];
+		switch (filter) {
+			case 0 -> {}
+			case 1 -> {
+				for (int i = 1 + bpp; i < row.length; i++)
+					row[i] += row[i - bpp];
+			}
+			case 2 -> {
+				for (int i = 1; i < row.length; i++)
+					row[i] += previous[i];
+			}
+			case 3 -> {
+				for (int i = 1; i < row.length; i++) {
+					int left = i > bpp ? row[i - bpp] & 0xff : 0;
+					row[i] += (left + (previous[i] & 0xff)) >>> 1;
+				}
+			}
+			case 4 -> {
+				for (int i = 1; i < row.length; i++) {
+					int a = i > bpp ? row[i - bpp] & 0xff : 0;
+					int b = previous[i] & 0xff;
+					int c = i > bpp ? previous[i - bpp] & 0xff : 0;
+					int p = a + b - c;
+					int pa = Math.abs(p - a);
+					int pb = Math.abs(p - b);
+					int pc = Math.abs(p - c);
+					row[i] += pa <= pb && pa <= pc ? a : pb <= pc ? b : c;
+				}
+			}
+			default -> throw new DataFormatException("Unknown PNG filter type " + filter);
+		}
+	}
+
+	private static void writeRow(@Nonnull State state, @Nonnull Canvas canvas, @Nullable ChangeListener listener) {
+		var row = state.current;
+		int offset = state.row * state.width;
+		switch (state.colorType) {
+			case TYPE_RGBA -> {
+				if (isTransparent(row))
+					return;
+				for (int x = 0, i = 1; x < state.width; x++, i += 4) {
+					if (row[i + 3] == 0)
+						continue;
+					int rgb = 0xff000000 | (row[i] & 0xff) << 16 | (row[i + 1] & 0xff) << 8 | row[i + 2] & 0xff;
+					write(state, canvas, listener, offset + x, state.lookup(rgb));
+				}
+			}
+			case TYPE_RGB -> {
+				for (int x = 0, i = 1; x < state.width; x++, i += 3) {
+					int rgb = 0xff000000 | (row[i] & 0xff) << 16 | (row[i + 1] & 0xff) << 8 | row[i + 2] & 0xff;
+					write(state, canvas, listener, offset + x, state.lookup(rgb));
+				}
+			}
+			default -> {
+				for (int x = 0; x < state.width; x++)
+					write(state, canvas, listener, offset + x, state.palette[row[x + 1] & 0xff]);
+			}
+		}
+	}
+
+	private static boolean isTransparent(@Nonnull byte[] row) {
+		for (int i = 4; i < row.length; i += 4) {
+			if (row[i] != 0)
+				return false;
+		}
+		return true;
+	}
+
+	private static void write(@Nonnull State state, @Nonnull Canvas canvas, @Nullable ChangeListener listener,
+							  int position, byte index) {
+		if (index == Canvas.NONE)
+			return;
+		state.applied++;
+		if (canvas.getAt(position) != index) {
+			canvas.setAt(position, index);
+			if (listener != null)
+				listener.changed(position, index);
+		}
+	}
+
+	private static int readInt(@Nonnull byte[] buffer, int offset) {
+		return (buffer[offset] & 0xff) << 24 | (buffer[offset + 1] & 0xff) << 16 | (buffer[offset + 2] & 0xff) << 8
+			| buffer[offset + 3] & 0xff;
+	}
+
+	private static void readFully(@Nonnull InputStream in, @Nonnull byte[] buffer, int offset,
+								  int length) throws IOException {
+		if (in.readNBytes(buffer, offset, length) != length)
+			throw new EOFException("PNG ended unexpectedly");
+	}
+
+	private static void skip(@Nonnull InputStream in, long length) throws IOException {
+		in.skipNBytes(length);
+	}
+
+	/**
+	 * Decoding state, pooled between frames so decoding doesn't allocate.
+	 */
+	private static final class State {
+
+		final Inflater inflater = new Inflater();
+		final byte[] buffer = new byte[8192];
+		final byte[] palette = new byte[256];
+
+		byte[] current = new byte[0];
+		byte[] previous = new byte[0];
+		@Nullable
+		Canvas canvas;
+		int width;
+		int height;
+		int colorType;
+		int bytesPerPixel;
+		int row;
+		int filled;
+		int applied;
+
+		// Consecutive pixels are usually the same color, so we remember the last lookup
+		int lastRgb;
+		byte lastIndex = Canvas.NONE;
+
+		void reset() {
+			this.inflater.reset();
+			Arrays.fill(this.palette, Canvas.NONE);
+			this.canvas = null;
+			this.width = 0;
+			this.height = 0;
+			this.row = 0;
+			this.filled = 0;
+			this.applied = 0;
+			this.lastRgb = 0;
+			this.lastIndex = Canvas.NONE;
+		}
+
+		void allocateRows(int length) {
+			if (this.current.length != length) {
+				this.current = new byte[length];
+				this.previous = new byte[length];
+			} else {
+				Arrays.fill(this.previous, (byte) 0);
+			}
+		}
+
+		void nextRow() {
+			var swap = this.previous;
+			this.previous = this.current;
+			this.current = swap;
+			this.filled = 0;
+			this.row++;
+		}
+
+		byte lookup(int rgb) {
+			if (rgb != this.lastRgb) {
+				var color = Color.getColor(rgb);
+				this.lastRgb = rgb;
+				this.lastIndex = color == null ? Canvas.NONE : (byte) color.getIndex();
+			}
+			return this.lastIndex;
+		}
+
+	}
+
+}
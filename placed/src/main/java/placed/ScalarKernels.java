@@ -0,0 +1,24 @@
+package placed;
+
+import static placed.Canvas.NONE;
+
+import javax.annotation.Nonnull;
+
+/**
+ * The plain loop version of the {@link PixelKernels}, and the reference for the vectorized one.
+ */
+final class ScalarKernels implements PixelKernels {
+
+	@Override
+	public int findMismatches(@Nonnull byte[] target, @Nonnull byte[] canvas, @Nonnull long[] words) {
+		int mismatches = 0;
+		for (int i = 0; i < target.length; i++) {
+			if (target[i] != NONE && target[i] != canvas[i]) {
+				words[i >>> 6] |= 1L << i;
+				mismatches++;
+			}
+		}
+		return mismatches;
+	}
+
+}
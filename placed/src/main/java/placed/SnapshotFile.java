@@ -0,0 +1,124 @@
+package placed;
+
+import static java.nio.channels.FileChannel.MapMode.READ_WRITE;
+import static java.nio.file.StandardOpenOption.*;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+
+import javax.annotation.*;
+
+/**
+ * A canvas persisted to a memory-mapped file together with the timestamp of the frame it reflects, so a restarted
+ * process has a usable canvas before the first full frame comes in. The layout is a fixed header followed by the
+ * palette indices:
+ *
+ * <pre>
+ * int  magic
+ * int  width
+ * int  height
+ * long timestamp, 0 while the pixels are being written
+ * byte pixels[width * height]
+ * </pre>
+ */
+final class SnapshotFile implements Closeable {
+
+	private static final int MAGIC = 0x504c4331; // PLC1
+	private static final int HEADER_SIZE = 20;
+	private static final int TIMESTAMP_OFFSET = 12;
+
+	@Nonnull
+	private final FileChannel channel;
+	@Nonnull
+	private final MappedByteBuffer buffer;
+	private final int width;
+	private final int height;
+
+	private SnapshotFile(@Nonnull FileChannel channel, @Nonnull MappedByteBuffer buffer, int width, int height) {
+		this.channel = channel;
+		this.buffer = buffer;
+		this.width = width;
+		this.height = height;
+	}
+
+	/**
+	 * Maps a snapshot file, creating it or starting it over if it doesn't hold a canvas of the given size.
+	 */
+	@Nonnull
+	static SnapshotFile open(@Nonnull Path path, int width, int height) throws IOException {
+		long size = HEADER_SIZE + (long) width * height;
+		var channel = FileChannel.open(path, CREATE, READ, WRITE);
+		try {
+			boolean valid = channel.size() == size;
+			var buffer = channel.map(READ_WRITE, 0, size);
+			if (!valid || buffer.getInt(0) != MAGIC || buffer.getInt(4) != width || buffer.getInt(8) != height) {
+				buffer.putInt(0, MAGIC);
+				buffer.putInt(4, width);
+				buffer.putInt(8, height);
+				buffer.putLong(TIMESTAMP_OFFSET, 0);
+			}
+			return new SnapshotFile(channel, buffer, width, height);
+
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * @return the timestamp of the stored canvas, or 0 if there's none
+	 */
+	long getTimestamp() {
+		return this.buffer.getLong(TIMESTAMP_OFFSET);
+	}
+
+	/**
+	 * @return the stored canvas, or {@code null} if there's none
+	 */
+	@Nullable
+	Canvas read() {
+		if (getTimestamp() == 0)
+			return null;
+		var canvas = new Canvas(this.width, this.height);
+		canvas.readFrom(this.buffer.slice(HEADER_SIZE, this.width * this.height));
+		return canvas;
+	}
+
+	/**
+	 * Stores the blocks of a canvas (see {@link CanvasSnapshot#blockOf(int, int)}) that changed after version
+	 * {@code since}, the rest are expected to be stored already. The timestamp is cleared while the pixels are
+	 * copied, so a crash halfway through leaves an empty snapshot instead of a torn one.
+	 *
+	 * @param blockVersions
+	 *            the version each block of the canvas last changed in
+	 */
+	void write(@Nonnull Canvas canvas, long timestamp, @Nonnull long[] blockVersions, long since) {
+		if (canvas.getWidth() != this.width || canvas.getHeight() != this.height)
+			throw new IllegalArgumentException("Canvas size doesn't match the snapshot file");
+		this.buffer.putLong(TIMESTAMP_OFFSET, 0);
+		var pixels = canvas.getPixels();
+		int across = (this.width + CanvasSnapshot.BLOCK_SIZE - 1) / CanvasSnapshot.BLOCK_SIZE;
+		for (int block = 0; block < blockVersions.length; block++) {
+			if (blockVersions[block] <= since)
+				continue;
+			int left = block % across * CanvasSnapshot.BLOCK_SIZE;
+			int top = block / across * CanvasSnapshot.BLOCK_SIZE;
+			int blockWidth = Math.min(CanvasSnapshot.BLOCK_SIZE, this.width - left);
+			int bottom = Math.min(top + CanvasSnapshot.BLOCK_SIZE, this.height);
+			for (int row = top; row < bottom; row++) {
+				int offset = row * this.width + left;
+				this.buffer.put(HEADER_SIZE + offset, pixels, offset, blockWidth);
+			}
+		}
+		this.buffer.putLong(TIMESTAMP_OFFSET, timestamp);
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.buffer.force();
+		this.channel.close();
+	}
+
+}
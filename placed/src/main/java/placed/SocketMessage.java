@@ -0,0 +1,205 @@
+package placed;
+
+import java.io.*;
+import java.util.*;
+
+import javax.annotation.*;
+
+import com.google.gson.stream.*;
+
+import placed.CanvasLayout.Placement;
+
+/**
+ * The fields the bot cares about out of a GraphQL WebSocket message. Messages are read with a streaming parser that
+ * only descends into {@code payload.data.subscribe.data} and skips everything else, so no tree is built for them.
+ */
+final class SocketMessage {
+
+	private static final String[] PAYLOAD_PATH = { "data", "subscribe", "data" };
+
+	@Nullable
+	private String type;
+	@Nullable
+	private String id;
+	@Nullable
+	private String typename;
+	@Nullable
+	private String name;
+	private long timestamp;
+	private long previousTimestamp;
+	private long currentTimestamp;
+	private int canvasWidth;
+	private int canvasHeight;
+	@Nullable
+	private List<Placement> placements;
+
+	private SocketMessage() {}
+
+	/**
+	 * Parses a complete message.
+	 *
+	 * @throws IOException
+	 *             if the message isn't well-formed JSON
+	 */
+	@Nonnull
+	static SocketMessage parse(@Nonnull String text) throws IOException {
+		var message = new SocketMessage();
+		try (var reader = new JsonReader(new StringReader(text))) {
+			reader.beginObject();
+			while (reader.hasNext()) {
+				switch (reader.nextName()) {
+					case "type" -> message.type = nextString(reader);
+					case "id" -> message.id = nextString(reader);
+					case "payload" -> readPayload(reader, message);
+					default -> reader.skipValue();
+				}
+			}
+			reader.endObject();
+		} catch (IllegalStateException | NumberFormatException e) {
+			throw new MalformedJsonException(e.getMessage());
+		}
+		return message;
+	}
+
+	private static void readPayload(@Nonnull JsonReader reader, @Nonnull SocketMessage message) throws IOException {
+		// Walk down payload.data.subscribe.data, counting the objects we're in so they can be left again
+		int depth = 0;
+		boolean found = false;
+		for (var key : PAYLOAD_PATH) {
+			if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+				reader.skipValue();
+				found = false;
+				break;
+			}
+			reader.beginObject();
+			depth++;
+			found = skipTo(reader, key);
+			if (!found)
+				break;
+		}
+
+		if (found && reader.peek() == JsonToken.BEGIN_OBJECT) {
+			reader.beginObject();
+			depth++;
+			while (reader.hasNext()) {
+				switch (reader.nextName()) {
+					case "__typename" -> message.typename = nextString(reader);
+					case "name" -> message.name = nextString(reader);
+					case "timestamp" -> message.timestamp = reader.nextLong();
+					case "previousTimestamp" -> message.previousTimestamp = reader.nextLong();
+					case "currentTimestamp" -> message.currentTimestamp = reader.nextLong();
+					case "canvasWidth" -> message.canvasWidth = reader.nextInt();
+					case "canvasHeight" -> message.canvasHeight = reader.nextInt();
+					case "canvasConfigurations" -> message.placements = readPlacements(reader);
+					default -> reader.skipValue();
+				}
+			}
+		} else if (found) {
+			reader.skipValue();
+		}
+
+		for (; depth > 0; depth--) {
+			skipTo(reader, null);
+			reader.endObject();
+		}
+	}
+
+	@Nonnull
+	private static List<Placement> readPlacements(@Nonnull JsonReader reader) throws IOException {
+		var placements = new ArrayList<Placement>();
+		reader.beginArray();
+		while (reader.hasNext()) {
+			int index = 0;
+			int dx = 0;
+			int dy = 0;
+			reader.beginObject();
+			while (reader.hasNext()) {
+				switch (reader.nextName()) {
+					case "index" -> index = reader.nextInt();
+					case "dx" -> dx = reader.nextInt();
+					case "dy" -> dy = reader.nextInt();
+					default -> reader.skipValue();
+				}
+			}
+			reader.endObject();
+			placements.add(new Placement(index, dx, dy));
+		}
+		reader.endArray();
+		return placements;
+	}
+
+	/**
+	 * Skips members of the current object until the one called {@code name}.
+	 *
+	 * @return whether the reader is now on the value of {@code name}, or false if it's at the end of the object
+	 */
+	private static boolean skipTo(@Nonnull JsonReader reader, @Nullable String name) throws IOException {
+		while (reader.hasNext()) {
+			if (reader.nextName().equals(name))
+				return true;
+			reader.skipValue();
+		}
+		return false;
+	}
+
+	@Nullable
+	private static String nextString(@Nonnull JsonReader reader) throws IOException {
+		if (reader.peek() == JsonToken.NULL) {
+			reader.nextNull();
+			return null;
+		}
+		return reader.nextString();
+	}
+
+	@Nullable
+	String getType() {
+		return this.type;
+	}
+
+	/**
+	 * @return the subscription id, which is the canvas index for frame messages
+	 */
+	@Nullable
+	String getId() {
+		return this.id;
+	}
+
+	/**
+	 * @return the {@code __typename} of the subscription's data, eg. {@code FullFrameMessageData}
+	 */
+	@Nullable
+	String getTypename() {
+		return this.typename;
+	}
+
+	/**
+	 * @return the frame's URL
+	 */
+	@Nullable
+	String getName() {
+		return this.name;
+	}
+
+	long getTimestamp() {
+		return this.timestamp;
+	}
+
+	long getPreviousTimestamp() {
+		return this.previousTimestamp;
+	}
+
+	long getCurrentTimestamp() {
+		return this.currentTimestamp;
+	}
+
+	/**
+	 * @return the canvas layout, if this is a {@code ConfigurationMessageData}
+	 */
+	@Nullable
+	CanvasLayout getLayout() {
+		if (this.placements == null || this.canvasWidth <= 0 || this.canvasHeight <= 0)
+			return null;
+		return new CanvasLayout(this.canvasWidth, this.canvasHeight, this.placements);
+	}
+
+}
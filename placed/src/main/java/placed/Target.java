@@ -0,0 +1,107 @@
+package placed;
+
+import javax.annotation.*;
+
+/**
+ * A target compiled into a packed list of its painted pixels. Targets are mostly transparent, so every loop that's
+ * driven by the target walks only {@link #positions} and {@link #colors} instead of the whole canvas. The dense
+ * canvas is kept around for constant-time lookups of single pixels.
+ */
+final class Target {
+
+	@Nonnull
+	private final Canvas canvas;
+	@Nonnull
+	private final int[] positions;
+	@Nonnull
+	private final byte[] colors;
+	@Nullable
+	private final PixelKernels kernels;
+
+	private Target(@Nonnull Canvas canvas, @Nonnull int[] positions, @Nonnull byte[] colors,
+				   @Nullable PixelKernels kernels) {
+		this.canvas = canvas;
+		this.positions = positions;
+		this.colors = colors;
+		this.kernels = kernels;
+	}
+
+	@Nonnull
+	static Target compile(@Nonnull Canvas canvas) {
+		return compile(canvas, null);
+	}
+
+	/**
+	 * @param kernels
+	 *            the dense kernels to compare whole canvases with, or {@code null} to use the packed loops
+	 */
+	@Nonnull
+	static Target compile(@Nonnull Canvas canvas, @Nullable PixelKernels kernels) {
+		int size = canvas.countPainted();
+		var positions = new int[size];
+		var colors = new byte[size];
+		int i = 0;
+		for (int position = 0; position < canvas.size(); position++) {
+			byte index = canvas.getAt(position);
+			if (index != Canvas.NONE) {
+				positions[i] = position;
+				colors[i] = index;
+				i++;
+			}
+		}
+		return new Target(canvas, positions, colors, kernels);
+	}
+
+	int getWidth() {
+		return this.canvas.getWidth();
+	}
+
+	int getHeight() {
+		return this.canvas.getHeight();
+	}
+
+	/**
+	 * @return the wanted color at a row-major {@code position}, or {@link Canvas#NONE} if the target doesn't care
+	 *         about it
+	 */
+	byte getAt(int position) {
+		return this.canvas.getAt(position);
+	}
+
+	/**
+	 * @return the number of painted pixels in this target
+	 */
+	int size() {
+		return this.positions.length;
+	}
+
+	/**
+	 * Sets the bit of every painted pixel that {@code canvas} doesn't match in {@code words}, which is laid out like
+	 * {@link java.util.BitSet#toLongArray()} and must be zeroed and large enough for the whole canvas.
+	 *
+	 * @return the number of mismatching pixels
+	 */
+	int findMismatches(@Nonnull Canvas canvas, @Nonnull long[] words) {
+		checkSize(canvas);
+		var dense = this.kernels;
+		if (dense != null)
+			return dense.findMismatches(this.canvas.getPixels(), canvas.getPixels(), words);
+
+		int mismatches = 0;
+		for (int i = 0; i < this.positions.length; i++) {
+			int position = this.positions[i];
+			if (canvas.getAt(position) != this.colors[i]) {
+				words[position >>> 6] |= 1L << position;
+				mismatches++;
+			}
+		}
+		return mismatches;
+	}
+
+	private void checkSize(@Nonnull Canvas other) {
+		if (other.getWidth() != getWidth() || other.getHeight() != getHeight())
+			throw new IllegalArgumentException(String.format("Canvas size mismatch: %dx%d and %dx%d", getWidth(),
+															 getHeight(), other.getWidth(), other.getHeight()));
+	}
+
+}
@@ -0,0 +1,235 @@
+package placed;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.nio.file.*;
+import java.security.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+import java.util.regex.Pattern;
+
+import javax.annotation.*;
+import javax.imageio.ImageIO;
+
+import placed.EventLog.Category;
+import placed.Placed.Color;
+
+/**
+ * Loads and compiles the target PNGs, named {@code <canvas index>.png}, from a directory. Opaque pixels that aren't
+ * in the palette are quantized to the nearest {@link Color} instead of being dropped, split into bands of rows on a
+ * {@link ForkJoinPool}. Compiled targets are cached by the SHA-256 of the file, so saving a file without changes or
+ * reverting it to an earlier version costs only a hash.
+ * <p>
+ * {@link #watch(IntConsumer)} follows the directory with a {@link WatchService} and reports which targets changed,
+ * so they can be swapped in without a restart.
+ */
+final class TargetLoader {
+
+	private static final Pattern TARGET_NAME = Pattern.compile("(\\d{1,9})\\.png");
+	private static final int CACHE_SIZE = 16;
+	// Editors tend to write a file in several steps, so events are collected until the directory is quiet for this long
+	private static final long SETTLE_MILLIS = 200;
+
+	@Nonnull
+	private final Path directory;
+	@Nonnull
+	private final ForkJoinPool pool;
+	@Nullable
+	private final PixelKernels kernels;
+	@Nonnull
+	private final EventLog log;
+	// Least recently used first
+	private final Map<String, Target> cache = new LinkedHashMap<>(CACHE_SIZE, 0.75f, true) {
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Target> eldest) {
+			return size() > CACHE_SIZE;
+		}
+
+	};
+
+	/**
+	 * @param kernels
+	 *            the dense kernels the targets compare whole canvases with, or {@code null} for the packed loops
+	 */
+	TargetLoader(@Nonnull Path directory, @Nonnull ForkJoinPool pool, @Nullable PixelKernels kernels,
+				 @Nonnull EventLog log) {
+		this.directory = directory;
+		this.pool = pool;
+		this.kernels = kernels;
+		this.log = log;
+	}
+
+	/**
+	 * Loads the target for a canvas. A file whose contents were loaded before gives back the same {@link Target}
+	 * instance, so callers can tell that nothing changed by comparing references.
+	 *
+	 * @return the compiled target, or {@code null} if the canvas has no target file
+	 */
+	@Nullable
+	Target load(int index) throws IOException {
+		var file = this.directory.resolve(index + ".png");
+		if (!Files.isRegularFile(file))
+			return null;
+
+		byte[] bytes = Files.readAllBytes(file);
+		var hash = hash(bytes);
+		synchronized (this.cache) {
+			var cached = this.cache.get(hash);
+			if (cached != null)
+				return cached;
+		}
+
+		var image = ImageIO.read(new ByteArrayInputStream(bytes));
+		if (image == null)
+			throw new IOException(file + " is not an image");
+		var quantized = new AtomicInteger();
+		long start = System.nanoTime();
+		var canvas = new Canvas(image.getWidth(), image.getHeight());
+		this.pool.invoke(new Quantize(image, canvas, 0, image.getHeight(), quantized));
+		var target = Target.compile(canvas, this.kernels);
+		this.log.info(Category.MAIN, "Compiled the target for canvas %d in %d ms, %d pixels", index,
+					  (System.nanoTime() - start) / 1_000_000, target.size());
+		if (quantized.get() > 0)
+			this.log.warn(Category.MAIN, "%d pixels of the target for canvas %d aren't in the palette, using the "
+				+ "nearest colors", quantized.get(), index);
+
+		synchronized (this.cache) {
+			this.cache.put(hash, target);
+		}
+		return target;
+	}
+
+	/**
+	 * Starts following the directory on a daemon thread. {@code changed} is called with the canvas index of every
+	 * target file that was created or modified, once the directory has settled. It runs on the watcher thread, so
+	 * compiling the target there doesn't hold up anything else.
+	 */
+	@Nonnull
+	Thread watch(@Nonnull IntConsumer changed) throws IOException {
+		var service = this.directory.getFileSystem().newWatchService();
+		this.directory.register(service, ENTRY_CREATE, ENTRY_MODIFY);
+		var thread = new Thread(() -> {
+			try (service) {
+				while (true) {
+					var indices = new TreeSet<Integer>();
+					var key = service.take();
+					do {
+						collect(key, indices);
+						if (!key.reset()) {
+							this.log.error(Category.MAIN, "%s can't be watched anymore", this.directory);
+							return;
+						}
+					} while ((key = service.poll(SETTLE_MILLIS, MILLISECONDS)) != null);
+
+					for (int index : indices) {
+						try {
+							changed.accept(index);
+						} catch (RuntimeException e) {
+							this.log.error(Category.MAIN, "Couldn't reload the target for canvas %d", index, e);
+						}
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (IOException e) {
+				this.log.error(Category.MAIN, "Couldn't close the watch service", e);
+			}
+		}, "target-watcher");
+		thread.setDaemon(true);
+		thread.start();
+		return thread;
+	}
+
+	private void collect(@Nonnull WatchKey key, @Nonnull Set<Integer> indices) throws IOException {
+		for (var event : key.pollEvents()) {
+			if (event.kind() == OVERFLOW) {
+				// Some events were lost, so check everything
+				try (var files = Files.list(this.directory)) {
+					files.forEach(f -> addIndex(f, indices));
+				}
+			} else if (event.context() instanceof Path file) {
+				addIndex(file, indices);
+			}
+		}
+	}
+
+	private static void addIndex(@Nonnull Path file, @Nonnull Set<Integer> indices) {
+		var matcher = TARGET_NAME.matcher(file.getFileName().toString());
+		if (matcher.matches())
+			indices.add(Integer.parseInt(matcher.group(1)));
+	}
+
+	@Nonnull
+	private static String hash(@Nonnull byte[] bytes) {
+		try {
+			return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is always available", e);
+		}
+	}
+
+	/**
+	 * Converts a band of rows to palette indices, splitting it in half until it's small enough.
+	 */
+	private static final class Quantize extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+		private static final int ROWS_PER_TASK = 32;
+
+		@Nonnull
+		private final transient BufferedImage image;
+		@Nonnull
+		private final transient Canvas canvas;
+		private final int from;
+		private final int to;
+		@Nonnull
+		private final AtomicInteger quantized;
+
+		Quantize(@Nonnull BufferedImage image, @Nonnull Canvas canvas, int from, int to,
+				 @Nonnull AtomicInteger quantized) {
+			this.image = image;
+			this.canvas = canvas;
+			this.from = from;
+			this.to = to;
+			this.quantized = quantized;
+		}
+
+		@Override
+		protected void compute() {
+			if (this.to - this.from > ROWS_PER_TASK) {
+				int middle = (this.from + this.to) >>> 1;
+				invokeAll(new Quantize(this.image, this.canvas, this.from, middle, this.quantized),
+						  new Quantize(this.image, this.canvas, middle, this.to, this.quantized));
+				return;
+			}
+
+			int width = this.image.getWidth();
+			var row = new int[width];
+			int misses = 0;
+			for (int y = this.from; y < this.to; y++) {
+				this.image.getRGB(0, y, width, 1, row, 0, width);
+				for (int x = 0; x < width; x++) {
+					int rgb = row[x];
+					if ((rgb & 0xff000000) == 0)
+						continue;
+					var color = Color.getColor(rgb);
+					if (color == null) {
+						color = Color.nearest(rgb);
+						misses++;
+					}
+					this.canvas.set(x, y, (byte) color.getIndex());
+				}
+			}
+			if (misses > 0)
+				this.quantized.addAndGet(misses);
+		}
+
+	}
+
+}
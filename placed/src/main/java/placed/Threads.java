@@ -0,0 +1,100 @@
+package placed;
+
+import static java.lang.invoke.MethodType.methodType;
+
+import java.lang.invoke.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.*;
+
+/**
+ * Creates the bot's threads: virtual threads when the runtime has them (Java 21 and up), and platform threads
+ * otherwise, or when {@code -Dplaced.threads=platform} is passed. The build targets Java 17, so the virtual thread
+ * API is looked up reflectively, much like the Vector API kernels in {@link PixelKernels}.
+ */
+final class Threads {
+
+	@Nullable
+	private static final MethodHandle VIRTUAL_FACTORY = virtualFactory();
+	@Nullable
+	private static final MethodHandle PER_TASK_EXECUTOR = perTaskExecutor();
+
+	private Threads() {}
+
+	/**
+	 * @return whether {@link #factory(String)} creates virtual threads
+	 */
+	static boolean isVirtual() {
+		return VIRTUAL_FACTORY != null && PER_TASK_EXECUTOR != null;
+	}
+
+	/**
+	 * @return a factory for threads named {@code name-<n>}; platform threads are daemons, like virtual threads are
+	 */
+	@Nonnull
+	static ThreadFactory factory(@Nonnull String name) {
+		if (isVirtual()) {
+			try {
+				return (ThreadFactory) VIRTUAL_FACTORY.invoke(name + "-", 0L);
+			} catch (Throwable e) { // NOSONAR the lookup already checked the signature
+				throw new IllegalStateException("Couldn't create a virtual thread factory", e);
+			}
+		}
+
+		var count = new AtomicInteger();
+		return task -> {
+			var thread = new Thread(task, name + "-" + count.getAndIncrement());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+
+	/**
+	 * @return an executor for blocking tasks: one new virtual thread per task, or a pool of {@code platformThreads}
+	 *         platform threads
+	 */
+	@Nonnull
+	static ExecutorService perTask(@Nonnull String name, int platformThreads) {
+		if (isVirtual()) {
+			try {
+				return (ExecutorService) PER_TASK_EXECUTOR.invoke(factory(name));
+			} catch (Throwable e) { // NOSONAR the lookup already checked the signature
+				throw new IllegalStateException("Couldn't create a virtual thread executor", e);
+			}
+		}
+		return Executors.newFixedThreadPool(platformThreads, factory(name));
+	}
+
+	@Nullable
+	private static MethodHandle virtualFactory() {
+		if ("platform".equals(System.getProperty("placed.threads")))
+			return null;
+		try {
+			var lookup = MethodHandles.publicLookup();
+			var builder = Class.forName("java.lang.Thread$Builder");
+			var ofVirtual = lookup.findStatic(Thread.class, "ofVirtual",
+											  methodType(Class.forName("java.lang.Thread$Builder$OfVirtual")));
+			var name = lookup.findVirtual(builder, "name", methodType(builder, String.class, long.class));
+			var factory = lookup.findVirtual(builder, "factory", methodType(ThreadFactory.class));
+			// (prefix, start) -> Thread.ofVirtual().name(prefix, start).factory()
+			var named = MethodHandles.collectArguments(name, 0, ofVirtual.asType(methodType(builder)));
+			return MethodHandles.filterReturnValue(named, factory);
+		} catch (ReflectiveOperationException e) {
+			// Not available before Java 21
+			return null;
+		}
+	}
+
+	@Nullable
+	private static MethodHandle perTaskExecutor() {
+		try {
+			return MethodHandles.publicLookup()
+				.findStatic(Executors.class, "newThreadPerTaskExecutor",
+							methodType(ExecutorService.class, ThreadFactory.class));
+		} catch (ReflectiveOperationException e) {
+			return null;
+		}
+	}
+
+}
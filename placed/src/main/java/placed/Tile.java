@@ -0,0 +1,76 @@
+package placed;
+
+import java.net.http.WebSocket;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+import javax.annotation.*;
+
+/**
+ * A canvas the bot is defending: its target, the {@link FramePipeline} that keeps track of it, and the WebSocket its
+ * frames arrive on. Tiles are only created for canvases that have a target, so the rest of the layout costs nothing.
+ */
+final class Tile {
+
+	private final int index;
+	@Nonnull
+	private final FramePipeline pipeline;
+	// The timestamp of the last frame applied, 0 while we're waiting for a full frame and -1 if a frame couldn't be
+	// fetched and the canvas needs a resync
+	private final AtomicLong frameTimestamp = new AtomicLong();
+	@Nonnull
+	private volatile Target target;
+	@Nullable
+	private volatile WebSocket socket;
+
+	Tile(int index, @Nonnull Target target, int queueCapacity, @Nonnull BiConsumer<Integer, Throwable> onError) {
+		this.index = index;
+		this.target = target;
+		this.pipeline = new FramePipeline(index, queueCapacity, this::getTarget, onError);
+	}
+
+	int getIndex() {
+		return this.index;
+	}
+
+	@Nonnull
+	FramePipeline getPipeline() {
+		return this.pipeline;
+	}
+
+	@Nonnull
+	AtomicLong getFrameTimestamp() {
+		return this.frameTimestamp;
+	}
+
+	@Nonnull
+	Target getTarget() {
+		return this.target;
+	}
+
+	/**
+	 * Replaces the target and has the pipeline re-check the canvas against it.
+	 */
+	void setTarget(@Nonnull Target target) {
+		this.target = target;
+		this.pipeline.retarget();
+	}
+
+	@Nullable
+	WebSocket getSocket() {
+		return this.socket;
+	}
+
+	void setSocket(@Nullable WebSocket socket) {
+		this.socket = socket;
+	}
+
+	/**
+	 * @return whether the tile's WebSocket is open, so that its canvas is kept up to date
+	 */
+	boolean isConnected() {
+		var ws = this.socket;
+		return ws != null && !ws.isInputClosed();
+	}
+
+}
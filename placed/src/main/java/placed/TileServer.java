@@ -0,0 +1,242 @@
+package placed;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.awt.image.*;
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32C;
+
+import javax.annotation.*;
+import javax.imageio.ImageIO;
+
+import com.google.gson.*;
+import com.sun.net.httpserver.*;
+
+import placed.Placed.Color;
+
+/**
+ * Serves the live canvases and their targets as PNG tiles of {@link CanvasSnapshot#BLOCK_SIZE} pixels, for
+ * dashboards:
+ * <ul>
+ * <li>{@code /tiles/index.json} lists the canvases, where they sit in the layout, and how many tiles they have
+ * <li>{@code /tiles/<layer>/<canvas>/<x>/<y>.png} is a tile of the {@code canvas} or {@code target} layer
+ * </ul>
+ * Tiles are rendered from the latest {@link CanvasSnapshot}, so they never hold up the pipeline workers. Every encoded
+ * tile is cached, and only re-encoded once a diff frame has changed its block of the canvas (or the target was
+ * reloaded), so most requests are answered from the cache, or with a 304 if the viewer still has the same ETag.
+ */
+final class TileServer {
+
+	enum Layer {
+		CANVAS,
+		TARGET
+	}
+
+	static final int TILE_SIZE = CanvasSnapshot.BLOCK_SIZE;
+
+	private static final Pattern TILE_PATH =
+		Pattern.compile("/tiles/(canvas|target)/(\\d{1,9})/(\\d{1,9})/(\\d{1,9})\\.png");
+	// Palette indices map straight to colors, and NONE (255 unsigned) is transparent
+	private static final IndexColorModel PALETTE = palette();
+
+	@Nonnull
+	private final IntFunction<Tile> tiles;
+	@Nonnull
+	private final Supplier<CanvasLayout> layout;
+	@Nonnull
+	private final Metrics.Counter requests;
+	private final Map<Key, Encoded> cache = new ConcurrentHashMap<>();
+
+	/**
+	 * @param tiles
+	 *            looks up a tracked canvas by its index, returning {@code null} for the rest
+	 * @param requests
+	 *            counts tile requests by whether they were re-encoded, cached or not modified
+	 */
+	TileServer(@Nonnull IntFunction<Tile> tiles, @Nonnull Supplier<CanvasLayout> layout,
+			   @Nonnull Metrics.Counter requests) {
+		this.tiles = tiles;
+		this.layout = layout;
+		this.requests = requests;
+	}
+
+	@Nonnull
+	HttpServer serve(@Nonnull InetSocketAddress address, @Nonnull Executor executor) throws IOException {
+		var server = HttpServer.create(address, 0);
+		server.createContext("/tiles/", exchange -> {
+			try (exchange) {
+				if (!"GET".equals(exchange.getRequestMethod()) && !"HEAD".equals(exchange.getRequestMethod())) {
+					exchange.sendResponseHeaders(405, -1);
+				} else if ("/tiles/index.json".equals(exchange.getRequestURI().getPath())) {
+					respond(exchange, "application/json", index().getBytes(UTF_8), null);
+				} else {
+					serveTile(exchange);
+				}
+			}
+		});
+		server.setExecutor(executor);
+		server.start();
+		return server;
+	}
+
+	@Nonnull
+	private String index() {
+		var current = this.layout.get();
+		var canvases = new JsonArray();
+		for (var placement : current.getPlacements()) {
+			var tile = this.tiles.apply(placement.index());
+			if (tile == null)
+				continue;
+			var canvas = new JsonObject();
+			canvas.addProperty("index", placement.index());
+			canvas.addProperty("dx", placement.dx());
+			canvas.addProperty("dy", placement.dy());
+			canvas.addProperty("columns", tilesFor(current.getTileWidth()));
+			canvas.addProperty("rows", tilesFor(current.getTileHeight()));
+			var snapshot = tile.getPipeline().getSnapshot();
+			canvas.addProperty("timestamp", snapshot == null ? 0 : snapshot.getTimestamp());
+			canvases.add(canvas);
+		}
+		var root = new JsonObject();
+		root.addProperty("tileSize", TILE_SIZE);
+		root.addProperty("width", current.getTileWidth());
+		root.addProperty("height", current.getTileHeight());
+		root.add("canvases", canvases);
+		return root.toString();
+	}
+
+	private void serveTile(@Nonnull HttpExchange exchange) throws IOException {
+		var matcher = TILE_PATH.matcher(exchange.getRequestURI().getPath());
+		var tile = matcher.matches() ? this.tiles.apply(Integer.parseInt(matcher.group(2))) : null;
+		var snapshot = tile == null ? null : tile.getPipeline().getSnapshot();
+		if (snapshot == null) {
+			exchange.sendResponseHeaders(404, -1);
+			return;
+		}
+
+		var layer = Layer.valueOf(matcher.group(1).toUpperCase());
+		int x = Integer.parseInt(matcher.group(3));
+		int y = Integer.parseInt(matcher.group(4));
+		if (x >= tilesFor(snapshot.getWidth()) || y >= tilesFor(snapshot.getHeight())) {
+			exchange.sendResponseHeaders(404, -1);
+			return;
+		}
+
+		var key = new Key(layer, tile.getIndex(), x, y);
+		var encoded = this.cache.get(key);
+		String result;
+		if (encoded == null || !encoded.isCurrent(layer, snapshot, x, y)) {
+			encoded = encode(layer, snapshot, x, y);
+			// A slower request may have encoded an older snapshot, keep whichever is newer
+			this.cache.merge(key, encoded, (a, b) -> a.version() >= b.version() ? a : b);
+			result = "encoded";
+		} else {
+			result = "cached";
+		}
+
+		// A re-encoded tile can still match the viewer's copy, after a restart or when its pixels changed back
+		if (encoded.etag().equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+			this.requests.increment(Metrics.labels("layer", layer.name().toLowerCase(), "result", "not_modified"));
+			exchange.getResponseHeaders().set("ETag", encoded.etag());
+			exchange.sendResponseHeaders(304, -1);
+			return;
+		}
+		this.requests.increment(Metrics.labels("layer", layer.name().toLowerCase(), "result", result));
+		respond(exchange, "image/png", encoded.png(), encoded.etag());
+	}
+
+	/**
+	 * @return how many tiles it takes to cover {@code pixels}
+	 */
+	private static int tilesFor(int pixels) {
+		return (pixels + TILE_SIZE - 1) / TILE_SIZE;
+	}
+
+	private static void respond(@Nonnull HttpExchange exchange, @Nonnull String type, @Nonnull byte[] body,
+								@Nullable String etag) throws IOException {
+		var headers = exchange.getResponseHeaders();
+		headers.set("Content-Type", type);
+		// Viewers may keep tiles, but have to check that they're still current
+		headers.set("Cache-Control", "no-cache");
+		if (etag != null)
+			headers.set("ETag", etag);
+		if ("HEAD".equals(exchange.getRequestMethod())) {
+			exchange.sendResponseHeaders(200, -1);
+			return;
+		}
+		exchange.sendResponseHeaders(200, body.length);
+		exchange.getResponseBody().write(body);
+	}
+
+	@Nonnull
+	private static Encoded encode(@Nonnull Layer layer, @Nonnull CanvasSnapshot snapshot, int x, int y)
+		throws IOException {
+		int width = snapshot.getWidth();
+		int left = x * TILE_SIZE;
+		int top = y * TILE_SIZE;
+		int tileWidth = Math.min(TILE_SIZE, width - left);
+		int tileHeight = Math.min(TILE_SIZE, snapshot.getHeight() - top);
+
+		var image = new BufferedImage(tileWidth, tileHeight, BufferedImage.TYPE_BYTE_INDEXED, PALETTE);
+		var pixels = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+		switch (layer) {
+			// Tiles are the snapshot's blocks
+			case CANVAS -> System.arraycopy(snapshot.getBlock(x, y), 0, pixels, 0, pixels.length);
+			case TARGET -> {
+				var target = snapshot.getTarget();
+				for (int row = 0; row < tileHeight; row++) {
+					for (int column = 0; column < tileWidth; column++)
+						pixels[row * tileWidth + column] = target.getAt((top + row) * width + left + column);
+				}
+			}
+		}
+
+		var png = new ByteArrayOutputStream(4096);
+		ImageIO.write(image, "png", png);
+		var bytes = png.toByteArray();
+		var crc = new CRC32C();
+		crc.update(bytes);
+		// The ETag depends only on the contents, so it stays valid across restarts
+		var etag = String.format("\"%08x-%x\"", crc.getValue(), bytes.length);
+		return new Encoded(snapshot.getVersion(), snapshot.getTarget(), bytes, etag);
+	}
+
+	@Nonnull
+	private static IndexColorModel palette() {
+		var r = new byte[256];
+		var g = new byte[256];
+		var b = new byte[256];
+		var a = new byte[256];
+		for (var color : Color.values()) {
+			int rgb = color.getRgb();
+			r[color.getIndex()] = (byte) (rgb >> 16);
+			g[color.getIndex()] = (byte) (rgb >> 8);
+			b[color.getIndex()] = (byte) rgb;
+			a[color.getIndex()] = (byte) 0xff;
+		}
+		return new IndexColorModel(8, 256, r, g, b, a);
+	}
+
+	private static record Key(@Nonnull Layer layer, int canvas, int x, int y) {}
+
+	/**
+	 * An encoded tile, and what it was encoded from.
+	 */
+	private static record Encoded(long version, @Nonnull Target target, @Nonnull byte[] png, @Nonnull String etag) {
+
+		boolean isCurrent(@Nonnull Layer layer, @Nonnull CanvasSnapshot snapshot, int x, int y) {
+			return switch (layer) {
+				case CANVAS -> this.version >= snapshot.getBlockVersion(x, y);
+				// Targets are immutable, so a target tile is only stale once a different target is swapped in
+				case TARGET -> this.target == snapshot.getTarget();
+			};
+		}
+
+	}
+
+}
@@ -0,0 +1,50 @@
+package placed;
+
+import static jdk.incubator.vector.VectorOperators.*;
+import static placed.Canvas.NONE;
+
+import javax.annotation.Nonnull;
+
+import jdk.incubator.vector.*;
+
+/**
+ * The {@link PixelKernels} on the incubating Vector API. {@link #findMismatches(byte[], byte[], long[])} loads a lane
+ * of target and canvas pixels at a time, turns the comparison into a mask and stores it straight into the bit set
+ * words. Lane counts are powers of two, and wider species than 64 lanes (on 1024 and 2048-bit SVE) are capped to
+ * {@code SPECIES_512}, so a mask always fits in a long and never straddles two words.
+ * <p>
+ * This lives in its own source root because it needs {@code --add-modules jdk.incubator.vector} to compile and run,
+ * it's only loaded through {@link PixelKernels#select()}.
+ */
+final class VectorKernels implements PixelKernels {
+
+	private static final VectorSpecies<Byte> SPECIES =
+		ByteVector.SPECIES_PREFERRED.length() > Long.SIZE ? ByteVector.SPECIES_512 : ByteVector.SPECIES_PREFERRED;
+	// A bit for every lane
+	private static final long LANES = -1L >>> (64 - SPECIES.length());
+
+	@Override
+	public int findMismatches(@Nonnull byte[] target, @Nonnull byte[] canvas, @Nonnull long[] words) {
+		int mismatches = 0;
+		int i = 0;
+		for (int bound = SPECIES.loopBound(target.length); i < bound; i += SPECIES.length()) {
+			var want = ByteVector.fromArray(SPECIES, target, i);
+			var have = ByteVector.fromArray(SPECIES, canvas, i);
+			var fine = want.compare(EQ, have).or(want.compare(EQ, NONE));
+			// Most lanes are fine, the mask is only turned into bits for the ones that aren't
+			int count = SPECIES.length() - fine.trueCount();
+			if (count != 0) {
+				words[i >>> 6] |= (~fine.toLong() & LANES) << i;
+				mismatches += count;
+			}
+		}
+		for (; i < target.length; i++) {
+			if (target[i] != NONE && target[i] != canvas[i]) {
+				words[i >>> 6] |= 1L << i;
+				mismatches++;
+			}
+		}
+		return mismatches;
+	}
+
+}
@@ -0,0 +1,32 @@
+package placed;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import placed.CanvasLayout.Placement;
+
+class CanvasLayoutTest {
+
+	@Test
+	void mergeKeepsTilesTheNewerLayoutDoesNotMention() {
+		var older = new CanvasLayout(1000, 1000, List.of(new Placement(0, 0, 0), new Placement(1, 1000, 0)));
+		var newer = new CanvasLayout(1000, 1000, List.of(new Placement(1, 0, 1000), new Placement(2, 1000, 1000)));
+		var merged = older.merge(newer);
+
+		assertEquals(List.of(new Placement(0, 0, 0), new Placement(1, 0, 1000), new Placement(2, 1000, 1000)),
+					 List.copyOf(merged.getPlacements()));
+		assertEquals(2000, merged.getWidth());
+		assertEquals(2000, merged.getHeight());
+	}
+
+	@Test
+	void mergeRejectsAnotherTileSize() {
+		var older = new CanvasLayout(1000, 1000, List.of(new Placement(0, 0, 0)));
+		var newer = new CanvasLayout(500, 1000, List.of(new Placement(1, 500, 0)));
+		assertThrows(IllegalArgumentException.class, () -> older.merge(newer));
+	}
+
+}
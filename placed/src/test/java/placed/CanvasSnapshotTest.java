@@ -0,0 +1,120 @@
+package placed;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+
+import org.junit.jupiter.api.Test;
+
+class CanvasSnapshotTest {
+
+	// Three blocks across and two down, the right and bottom ones cut off by the edges
+	private static final int WIDTH = 600;
+	private static final int HEIGHT = 300;
+
+	@Test
+	void copiesOnlyTheBlocksThatChanged() {
+		var canvas = new Canvas(WIDTH, HEIGHT);
+		var target = target(0, 0, (byte) 1);
+		var index = new MismatchIndex();
+		index.rebuild(canvas, target);
+		var versions = new long[CanvasSnapshot.blockCount(WIDTH, HEIGHT)];
+		Arrays.fill(versions, 1);
+		var first = CanvasSnapshot.take(null, canvas, index, 100, 1, versions);
+
+		// One pixel in the middle block of the bottom row
+		int position = 280 * WIDTH + 300;
+		int block = CanvasSnapshot.blockOf(position, WIDTH);
+		assertEquals(4, block);
+		canvas.setAt(position, (byte) 7);
+		index.update(position, (byte) 7);
+		versions[block] = 2;
+		var second = CanvasSnapshot.take(first, canvas, index, 200, 2, versions);
+
+		for (int y = 0; y < 2; y++) {
+			for (int x = 0; x < 3; x++) {
+				if (y * 3 + x == block)
+					assertNotSame(first.getBlock(x, y), second.getBlock(x, y));
+				else
+					assertSame(first.getBlock(x, y), second.getBlock(x, y));
+			}
+		}
+		assertEquals(Canvas.NONE, first.getAt(position));
+		assertEquals(7, second.getAt(position));
+		assertEquals(2, second.getBlockVersion(1, 1));
+		assertEquals(1, second.getBlockVersion(0, 1));
+		assertMatches(canvas, second);
+	}
+
+	@Test
+	void copiesEveryBlockWhenTheSizeChanges() {
+		var canvas = new Canvas(WIDTH, HEIGHT);
+		var index = new MismatchIndex();
+		index.rebuild(canvas, target(0, 0, (byte) 1));
+		var first = CanvasSnapshot.take(null, canvas, index, 100, 1, new long[6]);
+
+		var larger = new Canvas(WIDTH, HEIGHT + 10);
+		var target = Target.compile(new Canvas(WIDTH, HEIGHT + 10));
+		index.rebuild(larger, target);
+		var second = CanvasSnapshot.take(first, larger, index, 200, 2, new long[6]);
+		for (int y = 0; y < 2; y++) {
+			for (int x = 0; x < 3; x++)
+				assertNotSame(first.getBlock(x, y), second.getBlock(x, y));
+		}
+		assertMatches(larger, second);
+	}
+
+	@Test
+	void recomputesMismatchesWhenTheTargetChanges() {
+		var canvas = new Canvas(WIDTH, HEIGHT);
+		var index = new MismatchIndex();
+		index.rebuild(canvas, target(10, 10, (byte) 3));
+		var versions = new long[CanvasSnapshot.blockCount(WIDTH, HEIGHT)];
+		var first = CanvasSnapshot.take(null, canvas, index, 100, 1, versions);
+		assertArrayEquals(new int[] { 10 * WIDTH + 10 }, first.sample(5, new Random(1)));
+
+		// Nothing on the canvas changed, only the target
+		var target = target(550, 290, (byte) 3);
+		index.rebuild(canvas, target);
+		var second = CanvasSnapshot.take(first, canvas, index, 200, 2, versions);
+		assertSame(first.getBlock(0, 0), second.getBlock(0, 0));
+		assertSame(target, second.getTarget());
+		assertEquals(1, second.getMismatchCount());
+		assertArrayEquals(new int[] { 290 * WIDTH + 550 }, second.sample(5, new Random(1)));
+	}
+
+	@Test
+	void samplesEveryMismatchWhenThereAreFewerThanAsked() {
+		var wanted = new Canvas(WIDTH, HEIGHT);
+		var canvas = new Canvas(WIDTH, HEIGHT);
+		var expected = new TreeSet<Integer>();
+		var random = new Random(2);
+		for (int i = 0; i < 50; i++) {
+			int position = random.nextInt(WIDTH * HEIGHT);
+			wanted.setAt(position, (byte) 5);
+			expected.add(position);
+		}
+		var index = new MismatchIndex();
+		index.rebuild(canvas, Target.compile(wanted));
+		var snapshot = CanvasSnapshot.take(null, canvas, index, 100, 1, new long[6]);
+
+		var sample = new TreeSet<Integer>();
+		for (int position : snapshot.sample(expected.size() + 10, random))
+			sample.add(position);
+		assertEquals(expected, sample);
+	}
+
+	private static Target target(int x, int y, byte index) {
+		var wanted = new Canvas(WIDTH, HEIGHT);
+		wanted.setAt(y * WIDTH + x, index);
+		return Target.compile(wanted);
+	}
+
+	private static void assertMatches(Canvas canvas, CanvasSnapshot snapshot) {
+		assertEquals(canvas.getWidth(), snapshot.getWidth());
+		assertEquals(canvas.getHeight(), snapshot.getHeight());
+		for (int position = 0; position < canvas.size(); position++)
+			assertEquals(canvas.getAt(position), snapshot.getAt(position), "pixel " + position);
+	}
+
+}
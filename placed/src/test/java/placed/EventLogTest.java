@@ -0,0 +1,50 @@
+package placed;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.util.function.Predicate;
+
+import org.junit.jupiter.api.Test;
+
+import placed.EventLog.Category;
+
+class EventLogTest {
+
+	@Test
+	void wakesUpTheWriterForNewEvents() throws InterruptedException {
+		var buffer = new ByteArrayOutputStream();
+		var log = new EventLog(new PrintStream(buffer, true), 16);
+		for (int i = 0; i < 3; i++) {
+			// Long enough for the writer to have gone to sleep
+			Thread.sleep(50);
+			log.info(Category.MAIN, "Event %d", i);
+			int event = i;
+			awaitOutput(buffer, output -> output.contains("[  MAIN  ] INFO Event " + event));
+		}
+	}
+
+	@Test
+	void reportsSuppressedEventsWhenTheWindowEnds() throws InterruptedException {
+		var buffer = new ByteArrayOutputStream();
+		var log = new EventLog(new PrintStream(buffer, true), 64);
+		for (int i = 0; i < EventLog.RATE_LIMIT + 5; i++)
+			log.warn(Category.UPDATER, "Burst %d", i);
+
+		// Nothing else is logged, so only the end of the window can wake the writer up to report the burst
+		awaitOutput(buffer, output -> output.contains("[UPDATER ] WARN (suppressed 5 similar messages)"));
+		var output = buffer.toString();
+		assertTrue(output.contains("Burst " + (EventLog.RATE_LIMIT - 1)));
+		assertFalse(output.contains("Burst " + EventLog.RATE_LIMIT));
+	}
+
+	private static void awaitOutput(ByteArrayOutputStream buffer, Predicate<String> condition)
+		throws InterruptedException {
+		long deadline = System.nanoTime() + 5_000_000_000L;
+		while (!condition.test(buffer.toString())) {
+			assertTrue(System.nanoTime() < deadline, () -> "Timed out, the log has:\n" + buffer);
+			Thread.sleep(5);
+		}
+	}
+
+}
@@ -0,0 +1,104 @@
+package placed;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.net.*;
+import java.net.http.HttpClient;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.*;
+
+import com.sun.net.httpserver.HttpServer;
+
+import placed.FrameFetcher.FetchException;
+
+class FrameFetcherTest {
+
+	private HttpServer server;
+	private ExecutorService decoders;
+	private FrameFetcher fetcher;
+	private final AtomicInteger requests = new AtomicInteger();
+
+	@BeforeEach
+	void start() throws IOException {
+		this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		// The first request fails with the status in the path, the ones after it succeed
+		this.server.createContext("/", exchange -> {
+			int status = this.requests.getAndIncrement() == 0
+				? Integer.parseInt(exchange.getRequestURI().getPath().substring(1)) : 200;
+			var body = "frame".getBytes();
+			exchange.sendResponseHeaders(status, body.length);
+			try (var out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+		});
+		// The first response is cut off after a few bytes
+		this.server.createContext("/short", exchange -> {
+			var body = "frame".getBytes();
+			if (this.requests.getAndIncrement() == 0) {
+				exchange.sendResponseHeaders(200, 1000);
+				exchange.getResponseBody().write(body);
+				// Closing the exchange early drops the connection
+				exchange.close();
+				return;
+			}
+			exchange.sendResponseHeaders(200, body.length);
+			try (var out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+		});
+		this.server.start();
+		this.decoders = Executors.newFixedThreadPool(2);
+		this.fetcher = new FrameFetcher(HttpClient.newHttpClient(), this.decoders, 2, 3);
+	}
+
+	@AfterEach
+	void stop() {
+		this.server.stop(0);
+		this.decoders.shutdownNow();
+	}
+
+	@Test
+	void retriesServerErrors() throws Exception {
+		var body = this.fetcher.fetch(url(503), FrameFetcherTest::read).get(10, TimeUnit.SECONDS);
+		assertEquals("frame", body);
+		assertEquals(2, this.requests.get());
+	}
+
+	@Test
+	void failsClientErrorsRightAway() {
+		var error = assertFails(this.fetcher.fetch(url(404), FrameFetcherTest::read));
+		assertEquals(404, error.getStatusCode());
+		assertEquals(1, this.requests.get());
+	}
+
+	@Test
+	void failsBodiesThatDoNotParseRightAway() {
+		var error = assertFails(this.fetcher.fetch(url(200), PngDecoder::decode));
+		assertEquals(-1, error.getStatusCode());
+		assertEquals(1, this.requests.get());
+	}
+
+	@Test
+	void retriesBodiesThatFailToArrive() throws Exception {
+		var body = this.fetcher.fetch(url("short"), FrameFetcherTest::read).get(10, TimeUnit.SECONDS);
+		assertEquals("frame", body);
+		assertEquals(2, this.requests.get());
+	}
+
+	private String url(Object path) {
+		return "http://localhost:" + this.server.getAddress().getPort() + "/" + path;
+	}
+
+	private static String read(InputStream in) throws IOException {
+		return new String(in.readAllBytes());
+	}
+
+	private static FetchException assertFails(Future<?> future) {
+		var error = assertThrows(ExecutionException.class, () -> future.get(10, TimeUnit.SECONDS));
+		return assertInstanceOf(FetchException.class, error.getCause());
+	}
+
+}
@@ -0,0 +1,109 @@
+package placed;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import placed.FrameRecorder.Changes;
+
+class FrameRecorderTest {
+
+	private static final EventLog LOG = new EventLog(System.out, 64);
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void replaysInterleavedCanvases() throws IOException {
+		// The second index doesn't fit in a byte. Each canvas has its own clock, so the records of one can be far ahead
+		// of the other's
+		int[] ids = { 3, 300 };
+		long[] clocks = { 0, 10_000 };
+		var random = new Random(1);
+		var canvases = new Canvas[] { new Canvas(20, 10), new Canvas(20, 10) };
+		// The state of each canvas after every frame, by timestamp
+		var history = List.of(new TreeMap<Long, byte[]>(), new TreeMap<Long, byte[]>());
+
+		var path = this.directory.resolve("frames.bin");
+		try (var recorder = FrameRecorder.open(path, 4, LOG)) {
+			for (int frame = 0; frame < 60; frame++) {
+				int c = random.nextInt(2);
+				long timestamp = clocks[c] += 1 + random.nextInt(3);
+				var canvas = canvases[c];
+				var changes = new Changes();
+				for (int i = 0; i < 15; i++) {
+					int position = random.nextInt(canvas.size());
+					byte index = (byte) random.nextInt(32);
+					if (canvas.getAt(position) != index) {
+						canvas.setAt(position, index);
+						changes.changed(position, index);
+					}
+				}
+				sort(changes);
+				recorder.diff(ids[c], timestamp, changes, canvas);
+				history.get(c).put(timestamp, canvas.getPixels().clone());
+			}
+		}
+
+		try (var replay = FrameReplay.open(path)) {
+			for (int c = 0; c < 2; c++) {
+				var frames = history.get(c);
+				assertNull(replay.canvasAt(ids[c], frames.firstKey() - 1));
+				for (long timestamp = frames.firstKey(); timestamp <= frames.lastKey() + 1; timestamp++) {
+					var expected = frames.floorEntry(timestamp).getValue();
+					var actual = replay.canvasAt(ids[c], timestamp);
+					assertNotNull(actual, "canvas " + ids[c] + " at " + timestamp);
+					assertArrayEquals(expected, actual.getPixels(), "canvas " + ids[c] + " at " + timestamp);
+				}
+			}
+		}
+	}
+
+	@Test
+	void appendsToAnEarlierRecording() throws IOException {
+		var path = this.directory.resolve("frames.bin");
+		var canvas = new Canvas(4, 4);
+		try (var recorder = FrameRecorder.open(path, 100, LOG)) {
+			canvas.setAt(0, (byte) 1);
+			recorder.keyframe(0, 1, canvas);
+		}
+
+		// A new session starts with a diff, on top of a canvas the recording knows nothing about
+		canvas.setAt(5, (byte) 2);
+		canvas.setAt(15, (byte) 3);
+		try (var recorder = FrameRecorder.open(path, 100, LOG)) {
+			var changes = new Changes();
+			changes.changed(15, (byte) 3);
+			recorder.diff(0, 2, changes, canvas);
+		}
+
+		try (var replay = FrameReplay.open(path)) {
+			assertEquals(1, replay.canvasAt(0, 1).getAt(0));
+			assertEquals(Canvas.NONE, replay.canvasAt(0, 1).getAt(5));
+			assertArrayEquals(canvas.getPixels(), replay.canvasAt(0, 2).getPixels());
+		}
+	}
+
+	@Test
+	void refusesToAppendToOtherFiles() throws IOException {
+		var path = Files.write(this.directory.resolve("frames.bin"), new byte[] { 'P', 'L', 'R', '1', 0 });
+		assertThrows(IOException.class, () -> FrameRecorder.open(path, 100, LOG));
+	}
+
+	/**
+	 * Puts the changes in ascending order and keeps the last change of every position, like a decoded frame has them.
+	 */
+	private static void sort(Changes changes) {
+		var latest = new TreeMap<Integer, Byte>();
+		for (int i = 0; i < changes.count; i++)
+			latest.put(changes.positions[i], changes.indices[i]);
+		changes.clear();
+		latest.forEach(changes::changed);
+	}
+
+}
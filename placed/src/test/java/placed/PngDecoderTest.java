@@ -0,0 +1,218 @@
+package placed;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.*;
+
+import org.junit.jupiter.api.Test;
+
+import placed.Placed.Color;
+
+class PngDecoderTest {
+
+	private static final int WIDTH = 13;
+	// Every row uses the next filter type, so each one shows up at least twice
+	private static final int HEIGHT = 10;
+
+	@Test
+	void decodesIndexed() throws IOException {
+		var expected = randomPixels(1);
+		var png = Png.indexed(expected);
+		assertArrayEquals(expected, PngDecoder.decode(new ByteArrayInputStream(png)).getPixels());
+	}
+
+	@Test
+	void decodesRgb() throws IOException {
+		var expected = randomPixels(2);
+		var png = Png.rgb(expected, false);
+		assertArrayEquals(expected, PngDecoder.decode(new ByteArrayInputStream(png)).getPixels());
+	}
+
+	@Test
+	void decodesRgba() throws IOException {
+		var expected = randomPixels(3);
+		var png = Png.rgb(expected, true);
+		assertArrayEquals(expected, PngDecoder.decode(new ByteArrayInputStream(png)).getPixels());
+	}
+
+	@Test
+	void appliesOnlyOpaquePixelsOfDiffs() throws IOException {
+		var base = randomPixels(4);
+		var diff = randomPixels(5);
+		var canvas = new Canvas(WIDTH, HEIGHT);
+		for (int i = 0; i < base.length; i++)
+			canvas.setAt(i, base[i]);
+
+		var changed = new ArrayList<Integer>();
+		int applied = PngDecoder.decodeInto(new ByteArrayInputStream(Png.rgb(diff, true)), canvas,
+											(position, index) -> changed.add(position));
+
+		int opaque = 0;
+		var expectedChanges = new ArrayList<Integer>();
+		for (int i = 0; i < diff.length; i++) {
+			if (diff[i] == Canvas.NONE) {
+				assertEquals(base[i], canvas.getAt(i));
+				continue;
+			}
+			opaque++;
+			assertEquals(diff[i], canvas.getAt(i));
+			if (diff[i] != base[i])
+				expectedChanges.add(i);
+		}
+		assertEquals(opaque, applied);
+		assertEquals(expectedChanges, changed);
+	}
+
+	@Test
+	void rejectsFramesOfAnotherSize() {
+		var png = Png.indexed(new byte[WIDTH * HEIGHT]);
+		assertThrows(IOException.class,
+					 () -> PngDecoder.decodeInto(new ByteArrayInputStream(png), new Canvas(WIDTH + 1, HEIGHT), null));
+	}
+
+	@Test
+	void rejectsTruncatedImages() {
+		var png = Png.indexed(randomPixels(6));
+		var truncated = Arrays.copyOf(png, png.length - 20);
+		assertThrows(IOException.class, () -> PngDecoder.decode(new ByteArrayInputStream(truncated)));
+	}
+
+	/**
+	 * @return palette indices for a test image, about a quarter of them {@link Canvas#NONE}
+	 */
+	private static byte[] randomPixels(long seed) {
+		var random = new Random(seed);
+		var pixels = new byte[WIDTH * HEIGHT];
+		for (int i = 0; i < pixels.length; i++)
+			pixels[i] = random.nextInt(4) == 0 ? Canvas.NONE : (byte) random.nextInt(Color.values().length);
+		return pixels;
+	}
+
+	/**
+	 * A minimal PNG encoder, which cycles through the five filter types row by row.
+	 */
+	private static final class Png {
+
+		private static final Color[] BY_INDEX = new Color[Color.values().length];
+		static {
+			for (var color : Color.values())
+				BY_INDEX[color.getIndex()] = color;
+		}
+
+		/**
+		 * Encodes the palette indices as is, with an extra fully transparent entry for {@link Canvas#NONE}.
+		 */
+		static byte[] indexed(byte[] pixels) {
+			int none = BY_INDEX.length;
+			var palette = new byte[(none + 1) * 3];
+			for (int i = 0; i < none; i++) {
+				int rgb = BY_INDEX[i].getRgb();
+				palette[i * 3] = (byte) (rgb >> 16);
+				palette[i * 3 + 1] = (byte) (rgb >> 8);
+				palette[i * 3 + 2] = (byte) rgb;
+			}
+			var transparency = new byte[none + 1];
+			Arrays.fill(transparency, (byte) 0xff);
+			transparency[none] = 0;
+
+			var rows = new byte[HEIGHT][WIDTH];
+			for (int i = 0; i < pixels.length; i++)
+				rows[i / WIDTH][i % WIDTH] = pixels[i] == Canvas.NONE ? (byte) none : pixels[i];
+			return encode(3, 1, rows, palette, transparency);
+		}
+
+		/**
+		 * Encodes the pixels as RGB, where {@link Canvas#NONE} is a color outside the palette, or as RGBA, where it's
+		 * fully transparent.
+		 */
+		static byte[] rgb(byte[] pixels, boolean alpha) {
+			int bpp = alpha ? 4 : 3;
+			var rows = new byte[HEIGHT][WIDTH * bpp];
+			for (int i = 0; i < pixels.length; i++) {
+				var row = rows[i / WIDTH];
+				int offset = i % WIDTH * bpp;
+				int rgb = pixels[i] == Canvas.NONE ? 0x123456 : BY_INDEX[pixels[i]].getRgb();
+				row[offset] = (byte) (rgb >> 16);
+				row[offset + 1] = (byte) (rgb >> 8);
+				row[offset + 2] = (byte) rgb;
+				if (alpha)
+					row[offset + 3] = pixels[i] == Canvas.NONE ? 0 : (byte) 0xff;
+			}
+			return encode(alpha ? 6 : 2, bpp, rows, null, null);
+		}
+
+		private static byte[] encode(int colorType, int bpp, byte[][] rows, byte[] palette, byte[] transparency) {
+			try {
+				var png = new ByteArrayOutputStream();
+				png.write(new byte[] { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n' });
+
+				var header = new ByteArrayOutputStream();
+				var fields = new DataOutputStream(header);
+				fields.writeInt(WIDTH);
+				fields.writeInt(HEIGHT);
+				fields.write(new byte[] { 8, (byte) colorType, 0, 0, 0 });
+				chunk(png, "IHDR", header.toByteArray());
+				if (palette != null)
+					chunk(png, "PLTE", palette);
+				if (transparency != null)
+					chunk(png, "tRNS", transparency);
+
+				var data = new ByteArrayOutputStream();
+				try (var deflater = new DeflaterOutputStream(data)) {
+					var previous = new byte[rows[0].length];
+					for (int y = 0; y < rows.length; y++) {
+						int filter = y % 5;
+						deflater.write(filter);
+						deflater.write(filter(filter, rows[y], previous, bpp));
+						previous = rows[y];
+					}
+				}
+				chunk(png, "IDAT", data.toByteArray());
+				chunk(png, "IEND", new byte[0]);
+				return png.toByteArray();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		private static byte[] filter(int filter, byte[] row, byte[] previous, int bpp) {
+			var out = new byte[row.length];
+			for (int i = 0; i < row.length; i++) {
+				int a = i >= bpp ? row[i - bpp] & 0xff : 0;
+				int b = previous[i] & 0xff;
+				int c = i >= bpp ? previous[i - bpp] & 0xff : 0;
+				int predictor = switch (filter) {
+					case 0 -> 0;
+					case 1 -> a;
+					case 2 -> b;
+					case 3 -> (a + b) >>> 1;
+					default -> {
+						int p = a + b - c;
+						int pa = Math.abs(p - a);
+						int pb = Math.abs(p - b);
+						int pc = Math.abs(p - c);
+						yield pa <= pb && pa <= pc ? a : pb <= pc ? b : c;
+					}
+				};
+				out[i] = (byte) (row[i] - predictor);
+			}
+			return out;
+		}
+
+		private static void chunk(OutputStream png, String type, byte[] data) throws IOException {
+			var out = new DataOutputStream(png);
+			var crc = new CRC32();
+			var typeBytes = type.getBytes("US-ASCII");
+			crc.update(typeBytes);
+			crc.update(data);
+			out.writeInt(data.length);
+			out.write(typeBytes);
+			out.write(data);
+			out.writeInt((int) crc.getValue());
+		}
+
+	}
+
+}